@@ -0,0 +1,92 @@
+package com.example.bismillahberdetak.views;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.os.Debug;
+import android.view.View;
+
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.bismillahberdetak.models.Reading;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+// Counts objects allocated on the main thread while the chart draws. Readings are kept below
+// the downsample target so the series is shown synchronously and nothing runs in background.
+@RunWith(AndroidJUnit4.class)
+public class HistoryLineChartViewAllocationTest {
+
+    private static final int WIDTH = 1080;
+    private static final int HEIGHT = 600;
+    private static final int READINGS = 300;
+    private static final int FRAMES = 120;
+
+    private HistoryLineChartView chart;
+    private Canvas canvas;
+
+    @Before
+    public void setUp() {
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+            chart = new HistoryLineChartView(context);
+            chart.setReadings(readings());
+            layout(WIDTH, HEIGHT);
+            canvas = new Canvas(Bitmap.createBitmap(WIDTH, HEIGHT, Bitmap.Config.ARGB_8888));
+        });
+    }
+
+    private static List<Reading> readings() {
+        List<Reading> readings = new ArrayList<>();
+        long start = 1_700_000_000L;
+        for (int i = 0; i < READINGS; i++) {
+            readings.add(new Reading(70 + i % 15, 95 + i % 5, start + i * 60L,
+                    30, 3000, 30_000, "ppg", "maxim", "MAX30102"));
+        }
+        return readings;
+    }
+
+    private void layout(int width, int height) {
+        chart.measure(View.MeasureSpec.makeMeasureSpec(width, View.MeasureSpec.EXACTLY),
+                View.MeasureSpec.makeMeasureSpec(height, View.MeasureSpec.EXACTLY));
+        chart.layout(0, 0, width, height);
+    }
+
+    private int countDrawAllocations(int frames) {
+        int[] count = new int[1];
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> {
+            Debug.resetThreadAllocCount();
+            Debug.startAllocCounting();
+            for (int i = 0; i < frames; i++) {
+                chart.draw(canvas);
+            }
+            Debug.stopAllocCounting();
+            count[0] = Debug.getThreadAllocCount();
+        });
+        return count[0];
+    }
+
+    @Test
+    public void draw_steadyFramesDoNotAllocate() {
+        // The first frame renders the static layer into its bitmap.
+        countDrawAllocations(1);
+
+        assertEquals(0, countDrawAllocations(FRAMES));
+    }
+
+    @Test
+    public void draw_firstFrameAfterResizeDoesNotAllocate() {
+        countDrawAllocations(1);
+        InstrumentationRegistry.getInstrumentation().runOnMainSync(() -> layout(WIDTH, HEIGHT / 2));
+
+        assertEquals(0, countDrawAllocations(1));
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.bismillahberdetak.activities;
+
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.MenuItem;
+import android.view.View;
+import android.widget.EditText;
+import android.widget.Toast;
+
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.appcompat.widget.Toolbar;
+import androidx.recyclerview.widget.LinearLayoutManager;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.bismillahberdetak.R;
+import com.example.bismillahberdetak.adapters.DeviceAdapter;
+import com.example.bismillahberdetak.models.DeviceSummary;
+import com.example.bismillahberdetak.utils.DeviceDashboard;
+import com.example.bismillahberdetak.utils.MultiDeviceManager;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Watches several devices at once through one MultiDeviceManager. The list of device IDs is
+// kept across launches; each ID is the Firebase user node that device writes to.
+public class DevicesActivity extends AppCompatActivity implements DeviceDashboard.Observer {
+
+    private static final String TAG = "DevicesActivity";
+    private static final String PREFS_NAME = "devices";
+    private static final String KEY_DEVICE_IDS = "device_ids";
+
+    private static final int MAX_DEVICES = 8;
+    private static final int MAX_LIVE_STREAMS = 2;
+
+    private RecyclerView recyclerView;
+    private DeviceAdapter adapter;
+    private View textEmpty;
+    private EditText editDeviceId;
+
+    private SharedPreferences prefs;
+    private MultiDeviceManager deviceManager;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_devices);
+
+        initViews();
+        setupToolbar();
+        setupRecyclerView();
+        restoreDevices();
+    }
+
+    private void initViews() {
+        recyclerView = findViewById(R.id.recycler_devices);
+        textEmpty = findViewById(R.id.text_empty);
+        editDeviceId = findViewById(R.id.edit_device_id);
+        findViewById(R.id.btn_add_device).setOnClickListener(v -> addDevice());
+
+        prefs = getSharedPreferences(PREFS_NAME, MODE_PRIVATE);
+        deviceManager = new MultiDeviceManager(MAX_DEVICES, MAX_LIVE_STREAMS);
+        deviceManager.getDashboard().addObserver(this);
+    }
+
+    private void setupToolbar() {
+        Toolbar toolbar = findViewById(R.id.toolbar);
+        setSupportActionBar(toolbar);
+        if (getSupportActionBar() != null) {
+            getSupportActionBar().setDisplayHomeAsUpEnabled(true);
+            getSupportActionBar().setTitle(R.string.devices_title);
+        }
+    }
+
+    private void setupRecyclerView() {
+        adapter = new DeviceAdapter(this, new DeviceAdapter.OnDeviceClickListener() {
+            @Override
+            public void onDeviceClick(DeviceSummary device) {
+                if (device.isLive()) {
+                    deviceManager.stopLiveStream(device.getDeviceId());
+                } else {
+                    deviceManager.startLiveStream(device.getDeviceId());
+                }
+            }
+
+            @Override
+            public void onDeviceLongClick(DeviceSummary device) {
+                deviceManager.removeDevice(device.getDeviceId());
+                saveDevices();
+                showDevices();
+            }
+        });
+        recyclerView.setLayoutManager(new LinearLayoutManager(this));
+        recyclerView.setAdapter(adapter);
+    }
+
+    private void restoreDevices() {
+        String saved = prefs.getString(KEY_DEVICE_IDS, "");
+        if (!saved.isEmpty()) {
+            for (String deviceId : saved.split(",")) {
+                deviceManager.addDevice(deviceId);
+            }
+        }
+        showDevices();
+    }
+
+    private void addDevice() {
+        String deviceId = editDeviceId.getText().toString().trim();
+        if (deviceId.isEmpty()) return;
+
+        // Firebase keys cannot contain . # $ [ ] or /, and the saved list is comma separated.
+        if (!deviceId.matches("[^.#$\\[\\]/,]+")) {
+            editDeviceId.setError(getString(R.string.invalid_device_id));
+            return;
+        }
+
+        if (!deviceManager.addDevice(deviceId)) {
+            Toast.makeText(this, R.string.device_limit_reached, Toast.LENGTH_SHORT).show();
+            return;
+        }
+
+        editDeviceId.setText(null);
+        saveDevices();
+        showDevices();
+    }
+
+    private void saveDevices() {
+        List<String> deviceIds = new ArrayList<>();
+        for (DeviceSummary device : deviceManager.getDashboard().getDevices()) {
+            deviceIds.add(device.getDeviceId());
+        }
+        prefs.edit().putString(KEY_DEVICE_IDS, String.join(",", deviceIds)).apply();
+    }
+
+    private void showDevices() {
+        adapter.setDevices(deviceManager.getDashboard().getDevices());
+        textEmpty.setVisibility(adapter.getItemCount() == 0 ? View.VISIBLE : View.GONE);
+        Log.d(TAG, adapter.getItemCount() + " devices, "
+                + deviceManager.getActiveListenerCount() + " listeners attached");
+    }
+
+    @Override
+    public void onDevicesChanged(List<String> changedDeviceIds) {
+        adapter.notifyDevicesChanged(changedDeviceIds);
+    }
+
+    @Override
+    public boolean onOptionsItemSelected(MenuItem item) {
+        if (item.getItemId() == android.R.id.home) {
+            finish();
+            return true;
+        }
+        return super.onOptionsItemSelected(item);
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        deviceManager.getDashboard().removeObserver(this);
+        deviceManager.release();
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.bismillahberdetak.activities;
 
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
 import android.os.Bundle;
 import android.util.Log;
 import android.view.MenuItem;
@@ -15,9 +19,11 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.bismillahberdetak.R;
 import com.example.bismillahberdetak.adapters.HistoryAdapter;
-import com.example.bismillahberdetak.models.Reading;
+import com.example.bismillahberdetak.database.ReadingRepository;
+import com.example.bismillahberdetak.models.DateLabelCache;
+import com.example.bismillahberdetak.models.ReadingStore;
 import com.example.bismillahberdetak.utils.CSVExporter;
-import com.example.bismillahberdetak.utils.FirebaseManager;
+import com.example.bismillahberdetak.utils.ReadingDataSource;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.chip.Chip;
 import com.google.android.material.chip.ChipGroup;
@@ -27,11 +33,10 @@ import com.google.android.material.datepicker.MaterialDatePicker;
 
 import java.io.File;
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
 import java.util.Calendar;
 import java.util.Date;
-import java.util.List;
 import java.util.Locale;
+import java.util.function.Consumer;
 
 public class HistoryActivity extends AppCompatActivity {
 
@@ -44,14 +49,21 @@ public class HistoryActivity extends AppCompatActivity {
     private Chip chipCustom;
     private MaterialButton btnExportCSV, btnShareCSV;
 
-    private FirebaseManager firebaseManager;
-    private List<Reading> allReadings = new ArrayList<>();
-    private List<Reading> filteredReadings = new ArrayList<>();
+    private ReadingRepository readingRepository;
 
     private FilterType currentFilter = FilterType.ALL;
     private Long customStartDate = null;
     private Long customEndDate = null;
 
+    // Row labels come from DateLabelCache, which keeps the locale and time zone it was built in.
+    private final BroadcastReceiver dateSettingsReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            DateLabelCache.reset();
+            adapter.notifyItemRangeChanged(0, adapter.getItemCount());
+        }
+    };
+
     private enum FilterType {
         TODAY, YESTERDAY, LAST_7_DAYS, ALL, CUSTOM
     }
@@ -61,6 +73,12 @@ public class HistoryActivity extends AppCompatActivity {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_history);
 
+        // Settings may have changed while no history was on screen.
+        DateLabelCache.reset();
+        IntentFilter dateSettings = new IntentFilter(Intent.ACTION_TIMEZONE_CHANGED);
+        dateSettings.addAction(Intent.ACTION_LOCALE_CHANGED);
+        registerReceiver(dateSettingsReceiver, dateSettings);
+
         initViews();
         setupToolbar();
         setupRecyclerView();
@@ -76,7 +94,7 @@ public class HistoryActivity extends AppCompatActivity {
         btnExportCSV = findViewById(R.id.btn_export_csv);
         btnShareCSV = findViewById(R.id.btn_share_csv);
 
-        firebaseManager = new FirebaseManager();
+        readingRepository = ReadingRepository.getInstance(this);
     }
 
     private void setupToolbar() {
@@ -89,7 +107,18 @@ public class HistoryActivity extends AppCompatActivity {
     }
 
     private void setupRecyclerView() {
-        adapter = new HistoryAdapter(this, filteredReadings);
+        adapter = new HistoryAdapter(this, ReadingRepository.PAGE_SIZE, new HistoryAdapter.LoadListener() {
+            @Override
+            public void onLoaded(int itemCount) {
+                updateEmptyState();
+            }
+
+            @Override
+            public void onLoadFailed(String error) {
+                Toast.makeText(HistoryActivity.this, "Failed to load history: " + error, Toast.LENGTH_SHORT).show();
+                updateEmptyState();
+            }
+        });
         recyclerView.setLayoutManager(new LinearLayoutManager(this));
         recyclerView.setAdapter(adapter);
     }
@@ -268,30 +297,103 @@ public class HistoryActivity extends AppCompatActivity {
     }
 
     private void loadHistory() {
-        firebaseManager.fetchHistory(new FirebaseManager.FirebaseCallback<List<Reading>>() {
+        applyFilter();
+    }
+
+    // Only the current chip's window is pulled from Firebase, and only the parts of it that
+    // have not been synced before. "All" pages older history in lazily through its page source.
+    private void syncCurrentFilter() {
+        FilterType filter = currentFilter;
+        ReadingRepository.SyncListener listener = new ReadingRepository.SyncListener() {
             @Override
-            public void onSuccess(List<Reading> readings) {
-                runOnUiThread(() -> {
-                    allReadings.clear();
-                    allReadings.addAll(readings);
-                    applyFilter();
-                    Log.d(TAG, "Loaded " + readings.size() + " readings");
-                });
+            public void onReadingsSynced(int count) {
+                if (count > 0 && filter == currentFilter) {
+                    Log.d(TAG, count + " readings synced, reloading");
+                    adapter.refresh();
+                }
             }
 
             @Override
-            public void onFailure(String error) {
-                runOnUiThread(() -> {
-                    Toast.makeText(HistoryActivity.this, "Failed to load history: " + error, Toast.LENGTH_SHORT).show();
-                    updateEmptyState();
+            public void onSyncFailed(String error) {
+                Log.w(TAG, "History sync failed, showing local data: " + error);
+            }
+        };
+
+        if (filter == FilterType.ALL) {
+            readingRepository.syncRecent(listener);
+        } else {
+            long[] bounds = getFilterBounds();
+            readingRepository.syncRange(bounds[0], bounds[1], listener);
+        }
+    }
+
+    // Pages come from the local store. "All" only pages the synced range that reaches the
+    // newest reading and backfills older history from Firebase before paging past it.
+    private HistoryAdapter.PageSource createPageSource() {
+        long[] bounds = getFilterBounds();
+        boolean backfill = currentFilter == FilterType.ALL;
+
+        return new HistoryAdapter.PageSource() {
+            @Override
+            public void loadPage(long beforeTimestamp, int limit,
+                                 ReadingDataSource.Callback<ReadingStore> callback) {
+                ReadingDataSource.Callback<ReadingStore> onLoaded = new ReadingDataSource.Callback<ReadingStore>() {
+                    @Override
+                    public void onSuccess(ReadingStore readings) {
+                        if (!backfill || readings.size() == limit
+                                || readingRepository.isBackfillComplete()) {
+                            callback.onSuccess(readings);
+                            return;
+                        }
+                        backfillAndRetry(beforeTimestamp, limit, readings, callback);
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        callback.onFailure(error);
+                    }
+                };
+
+                if (backfill) {
+                    readingRepository.loadSyncedPage(beforeTimestamp, limit, onLoaded);
+                } else {
+                    readingRepository.loadPage(bounds[0], bounds[1], beforeTimestamp, limit, onLoaded);
+                }
+            }
+
+            // Ranges are only asked for pages already listed, so no backfill is needed here.
+            @Override
+            public void loadRange(long fromTimestamp, long beforeTimestamp,
+                                  ReadingDataSource.Callback<ReadingStore> callback) {
+                readingRepository.loadPage(Math.max(bounds[0], fromTimestamp), bounds[1], beforeTimestamp, 0, callback);
+            }
+
+            private void backfillAndRetry(long beforeTimestamp, int limit, ReadingStore partial,
+                                          ReadingDataSource.Callback<ReadingStore> callback) {
+                readingRepository.backfillNextPage(new ReadingRepository.SyncListener() {
+                    @Override
+                    public void onReadingsSynced(int count) {
+                        loadPage(beforeTimestamp, limit, callback);
+                    }
+
+                    @Override
+                    public void onSyncFailed(String error) {
+                        Log.w(TAG, "Backfill failed: " + error);
+                        callback.onSuccess(partial);
+                    }
                 });
             }
-        });
+        };
     }
 
     private void applyFilter() {
-        filteredReadings.clear();
+        Log.d(TAG, "Filter applied: " + currentFilter);
+        adapter.setPageSource(createPageSource());
+        syncCurrentFilter();
+    }
 
+    // Returns the {start, end} window of the current filter in epoch seconds, inclusive.
+    private long[] getFilterBounds() {
         Calendar calendar = Calendar.getInstance();
         calendar.set(Calendar.HOUR_OF_DAY, 0);
         calendar.set(Calendar.MINUTE, 0);
@@ -311,48 +413,30 @@ public class HistoryActivity extends AppCompatActivity {
         calendar.set(Calendar.MILLISECOND, 0);
         long sevenDaysAgo = calendar.getTimeInMillis() / 1000;
 
-        for (Reading reading : allReadings) {
-            long timestamp = reading.getTimestamp();
-
-            switch (currentFilter) {
-                case TODAY:
-                    if (timestamp >= todayStart) {
-                        filteredReadings.add(reading);
-                    }
-                    break;
-                case YESTERDAY:
-                    if (timestamp >= yesterdayStart && timestamp < todayStart) {
-                        filteredReadings.add(reading);
-                    }
-                    break;
-                case LAST_7_DAYS:
-                    if (timestamp >= sevenDaysAgo) {
-                        filteredReadings.add(reading);
-                    }
-                    break;
-                case CUSTOM:
-                    if (customStartDate != null && customEndDate != null) {
-                        long readingMillis = timestamp * 1000;
-                        if (readingMillis >= customStartDate && readingMillis <= customEndDate) {
-                            filteredReadings.add(reading);
-                        }
-                    }
-                    break;
-                case ALL:
-                default:
-                    filteredReadings.add(reading);
-                    break;
-            }
+        switch (currentFilter) {
+            case TODAY:
+                return new long[]{todayStart, Long.MAX_VALUE};
+            case YESTERDAY:
+                return new long[]{yesterdayStart, todayStart - 1};
+            case LAST_7_DAYS:
+                return new long[]{sevenDaysAgo, Long.MAX_VALUE};
+            case CUSTOM:
+                if (customStartDate != null && customEndDate != null) {
+                    return new long[]{
+                            (customStartDate + 999) / 1000,
+                            Math.floorDiv(customEndDate, 1000L)
+                    };
+                }
+                return new long[]{Long.MAX_VALUE, Long.MIN_VALUE};
+            case ALL:
+            default:
+                return new long[]{Long.MIN_VALUE, Long.MAX_VALUE};
         }
-
-        adapter.notifyDataSetChanged();
-        updateEmptyState();
-
-        Log.d(TAG, "Filter applied: " + currentFilter + ", showing " + filteredReadings.size() + " readings");
     }
 
     private void updateEmptyState() {
-        if (filteredReadings.isEmpty()) {
+        boolean empty = adapter.getItemCount() == 0;
+        if (empty) {
             recyclerView.setVisibility(View.GONE);
             textEmpty.setVisibility(View.VISIBLE);
         } else {
@@ -360,17 +444,17 @@ public class HistoryActivity extends AppCompatActivity {
             textEmpty.setVisibility(View.GONE);
         }
 
-        btnExportCSV.setEnabled(!filteredReadings.isEmpty());
-        btnShareCSV.setEnabled(!filteredReadings.isEmpty());
+        btnExportCSV.setEnabled(!empty);
+        btnShareCSV.setEnabled(!empty);
     }
 
     private void exportCSV() {
-        if (filteredReadings.isEmpty()) {
+        if (adapter.getItemCount() == 0) {
             Toast.makeText(this, "No data to export", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        CSVExporter.exportToCSV(this, filteredReadings, new CSVExporter.ExportCallback() {
+        loadFilteredRange(readings -> CSVExporter.exportToCSV(this, readings, new CSVExporter.ExportCallback() {
             @Override
             public void onSuccess(File file) {
                 Toast.makeText(HistoryActivity.this,
@@ -384,16 +468,16 @@ public class HistoryActivity extends AppCompatActivity {
                         getString(R.string.csv_export_failed) + ": " + error,
                         Toast.LENGTH_LONG).show();
             }
-        });
+        }));
     }
 
     private void shareCSV() {
-        if (filteredReadings.isEmpty()) {
+        if (adapter.getItemCount() == 0) {
             Toast.makeText(this, "No data to share", Toast.LENGTH_SHORT).show();
             return;
         }
 
-        CSVExporter.exportAndShare(this, filteredReadings, new CSVExporter.ExportCallback() {
+        loadFilteredRange(readings -> CSVExporter.exportAndShare(this, readings, new CSVExporter.ExportCallback() {
             @Override
             public void onSuccess(File file) {
             }
@@ -404,6 +488,24 @@ public class HistoryActivity extends AppCompatActivity {
                         "Failed to share: " + error,
                         Toast.LENGTH_SHORT).show();
             }
+        }));
+    }
+
+    // Export covers the whole filter window from the local store, not just the loaded pages.
+    private void loadFilteredRange(Consumer<ReadingStore> onLoaded) {
+        long[] bounds = getFilterBounds();
+        readingRepository.loadRange(bounds[0], bounds[1], new ReadingDataSource.Callback<ReadingStore>() {
+            @Override
+            public void onSuccess(ReadingStore readings) {
+                onLoaded.accept(readings);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Toast.makeText(HistoryActivity.this,
+                        getString(R.string.csv_export_failed) + ": " + error,
+                        Toast.LENGTH_LONG).show();
+            }
         });
     }
 
@@ -419,5 +521,6 @@ public class HistoryActivity extends AppCompatActivity {
     @Override
     protected void onDestroy() {
         super.onDestroy();
+        unregisterReceiver(dateSettingsReceiver);
     }
 }
\ No newline at end of file
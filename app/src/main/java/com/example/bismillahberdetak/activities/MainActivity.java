@@ -4,6 +4,7 @@ import android.content.Intent;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import android.util.Log;
 import android.view.View;
 import android.widget.TextView;
@@ -15,22 +16,37 @@ import androidx.cardview.widget.CardView;
 import androidx.core.content.ContextCompat;
 
 import com.example.bismillahberdetak.R;
+import com.example.bismillahberdetak.database.ReadingRepository;
 import com.example.bismillahberdetak.models.ConnectionStatus;
 import com.example.bismillahberdetak.models.Reading;
-import com.example.bismillahberdetak.utils.FirebaseManager;
+import com.example.bismillahberdetak.models.ReadingStore;
+import com.example.bismillahberdetak.utils.CommandChannel;
+import com.example.bismillahberdetak.utils.ConflatingDispatcher;
+import com.example.bismillahberdetak.utils.DataSourceProvider;
+import com.example.bismillahberdetak.utils.DeviceLivenessMonitor;
 import com.example.bismillahberdetak.utils.NotificationHelper;
+import com.example.bismillahberdetak.utils.ReadingDataSource;
+import com.example.bismillahberdetak.utils.Subscription;
+import com.example.bismillahberdetak.vitals.SignalQualityEstimator;
+import com.example.bismillahberdetak.vitals.VitalsCrossCheck;
 import com.example.bismillahberdetak.views.HistoryLineChartView;
+import com.example.bismillahberdetak.views.LiveTrendView;
 import com.google.android.material.button.MaterialButton;
 import com.google.android.material.progressindicator.LinearProgressIndicator;
 
-import java.util.List;
+import java.util.Map;
+
 
 public class MainActivity extends AppCompatActivity {
 
     private static final String TAG = "MainActivity";
     private static final long CONNECTION_CHECK_INTERVAL = 10000;
     private static final long ESP32_TIMEOUT = 6000;
+    private static final long POOR_SIGNAL_ABORT_MS = 15000;
+    // The chart downsamples to its width, so it can take the whole local history.
+    private static final int CHART_READINGS_LIMIT = 10000;
     private HistoryLineChartView chartView;
+    private LiveTrendView liveTrendView;
     private TextView textHeartRate, textSpo2;
     private TextView textFirebaseStatus, textSensorStatus, textEsp32Status;
     private View indicatorFirebase, indicatorSensor, indicatorEsp32;
@@ -38,7 +54,15 @@ public class MainActivity extends AppCompatActivity {
     private LinearProgressIndicator progressBar;
     private CardView cardProgress;
     private MaterialButton btnStart;
-    private FirebaseManager firebaseManager;
+    private ReadingDataSource dataSource;
+    private CommandChannel commandChannel;
+    private DeviceLivenessMonitor livenessMonitor;
+    private ReadingRepository readingRepository;
+    private Subscription statusSubscription;
+    private ConflatingDispatcher<Reading> instantReadingDispatcher;
+    private VitalsCrossCheck vitalsCrossCheck;
+    private SignalQualityEstimator signalQuality;
+    private boolean showingPoorSignalHint = false;
     private NotificationHelper notificationHelper;
     private Handler connectionCheckHandler;
     private Runnable connectionCheckRunnable;
@@ -46,6 +70,8 @@ public class MainActivity extends AppCompatActivity {
     private boolean isMeasuring = false;
     private int currentHeartRate = 0;
     private int currentSpo2 = 0;
+    // Newest reading the chart holds, compared with the store on resume.
+    private long chartLatestTimestamp = Long.MIN_VALUE;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -56,8 +82,7 @@ public class MainActivity extends AppCompatActivity {
         initManagers();
         setupListeners();
         startPeriodicConnectionCheck();
-
-        loadChartData();
+        startLivenessMonitor();
     }
 
     @Override
@@ -65,7 +90,8 @@ public class MainActivity extends AppCompatActivity {
         super.onResume();
         Log.d(TAG, "onResume() - Checking connections...");
         checkConnections();
-        loadChartData();
+        reloadChartIfStale();
+        syncReadings();
     }
 
     @Override
@@ -90,6 +116,7 @@ public class MainActivity extends AppCompatActivity {
 
         cardProgress = findViewById(R.id.card_progress);
         progressBar = findViewById(R.id.progress_bar);
+        liveTrendView = findViewById(R.id.live_trend_view);
         textProgressPercent = findViewById(R.id.text_progress_percent);
         textSecondsRemaining = findViewById(R.id.text_seconds_remaining);
 
@@ -104,8 +131,14 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void initManagers() {
-        firebaseManager = new FirebaseManager();
+        dataSource = DataSourceProvider.getDataSource();
+        commandChannel = new CommandChannel(dataSource);
+        commandChannel.open();
+        readingRepository = ReadingRepository.getInstance(this);
         notificationHelper = new NotificationHelper(this);
+        instantReadingDispatcher = new ConflatingDispatcher<>(this::showInstantReading);
+        vitalsCrossCheck = new VitalsCrossCheck();
+        signalQuality = new SignalQualityEstimator();
     }
 
     private void setupListeners() {
@@ -114,6 +147,11 @@ public class MainActivity extends AppCompatActivity {
             startActivity(new Intent(MainActivity.this, HistoryActivity.class));
         });
 
+        findViewById(R.id.btn_devices).setOnClickListener(v -> {
+            notificationHelper.vibrateClick();
+            startActivity(new Intent(MainActivity.this, DevicesActivity.class));
+        });
+
         btnStart.setOnClickListener(v -> {
             notificationHelper.vibrateClick();
             Log.d(TAG, "===== BUTTON CLICKED =====");
@@ -138,6 +176,7 @@ public class MainActivity extends AppCompatActivity {
 
         listenToFirebaseStatus();
         listenToInstantReading();
+        listenToPpgFrames();
         listenToLatestReading();
     }
 
@@ -149,7 +188,6 @@ public class MainActivity extends AppCompatActivity {
                 if (!isMeasuring) {
                     Log.d(TAG, "Periodic connection check...");
                     checkConnections();
-                    checkESP32Alive();
                 }
                 connectionCheckHandler.postDelayed(this, CONNECTION_CHECK_INTERVAL);
             }
@@ -166,7 +204,7 @@ public class MainActivity extends AppCompatActivity {
     private void checkConnections() {
         Log.d(TAG, "checkConnections() called");
 
-        firebaseManager.checkConnection(new FirebaseManager.FirebaseCallback<Boolean>() {
+        dataSource.checkConnection(new ReadingDataSource.Callback<Boolean>() {
             @Override
             public void onSuccess(Boolean connected) {
                 if (connected) {
@@ -189,34 +227,26 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
-    private void checkESP32Alive() {
-        firebaseManager.getLastSeen(new FirebaseManager.FirebaseCallback<Long>() {
-            @Override
-            public void onSuccess(Long lastSeen) {
-                if (lastSeen != null) {
-                    long now = System.currentTimeMillis() / 1000;
-                    long timeSinceLastSeen = now - lastSeen;
-
-                    Log.d(TAG, "ESP32 last seen: " + timeSinceLastSeen + "s ago");
-
-                    if (timeSinceLastSeen > 6) {
-                        connectionStatus.setEsp32Status(ConnectionStatus.Status.DISCONNECTED);
-                        connectionStatus.setSensorStatus(ConnectionStatus.Status.DISCONNECTED);
-                        updateConnectionUI();
-                        Log.w(TAG, "ESP32 likely disconnected (last seen " + timeSinceLastSeen + "s ago)");
-                    }
-                }
-            }
-
-            @Override
-            public void onFailure(String error) {
-                Log.e(TAG, "Failed to check ESP32 heartbeat: " + error);
+    private void startLivenessMonitor() {
+        livenessMonitor = new DeviceLivenessMonitor(dataSource, ESP32_TIMEOUT, (alive, lastSeenAgeMs) -> {
+            if (alive) {
+                connectionStatus.setEsp32Status(ConnectionStatus.Status.CONNECTED);
+            } else {
+                connectionStatus.setEsp32Status(ConnectionStatus.Status.DISCONNECTED);
+                connectionStatus.setSensorStatus(ConnectionStatus.Status.DISCONNECTED);
+                String lastSeen = lastSeenAgeMs == DeviceLivenessMonitor.AGE_UNKNOWN
+                        ? "never" : lastSeenAgeMs / 1000 + "s ago";
+                Log.w(TAG, "ESP32 likely disconnected (last seen " + lastSeen + ")");
             }
+            updateConnectionUI();
         });
+        livenessMonitor.start();
     }
 
     private void checkESP32Connection() {
-        firebaseManager.listenToStatus(new FirebaseManager.FirebaseCallback<String>() {
+        if (statusSubscription != null) return;
+
+        statusSubscription = dataSource.listenToStatus(new ReadingDataSource.Callback<String>() {
             @Override
             public void onSuccess(String status) {
                 Log.d(TAG, "ESP32 Status: " + status);
@@ -271,6 +301,7 @@ public class MainActivity extends AppCompatActivity {
             @Override
             public void onFailure(String error) {
                 Log.e(TAG, "Status listener error: " + error);
+                closeStatusSubscription();
                 connectionStatus.setEsp32Status(ConnectionStatus.Status.DISCONNECTED);
                 connectionStatus.setSensorStatus(ConnectionStatus.Status.DISCONNECTED);
                 updateConnectionUI();
@@ -279,31 +310,30 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    private void closeStatusSubscription() {
+        if (statusSubscription != null) {
+            statusSubscription.close();
+            statusSubscription = null;
+        }
+    }
+
     private void listenToFirebaseStatus() {
     }
 
     private void listenToInstantReading() {
-        firebaseManager.listenToInstantReading(new FirebaseManager.FirebaseCallback<Reading>() {
+        dataSource.listenToInstantReading(new ReadingDataSource.Callback<Reading>() {
             @Override
             public void onSuccess(Reading reading) {
-                if (reading != null) {
-                    runOnUiThread(() -> {
-                        if (isMeasuring) {
-                            Boolean hasValid = reading.getHasValidReading();
-
-                            if (hasValid != null && hasValid) {
-                                Log.d(TAG, "Valid instant: HR=" + reading.getInstantHR() +
-                                        ", SpO2=" + reading.getInstantSPO2());
-
-                                animateValueChange(textHeartRate, reading.getInstantHR());
-                                animateValueChange(textSpo2, reading.getInstantSPO2());
-                            } else {
-                                Log.d(TAG, "Invalid reading, waiting for valid data...");
-                            }
-
-                            updateProgressUI(reading);
-                        }
-                    });
+                if (reading != null && isMeasuring) {
+                    // Every update is scored, even the ones the dispatcher conflates away.
+                    signalQuality.add(SystemClock.elapsedRealtime(), reading.getInstantHR(),
+                            reading.getInstantSPO2(), vitalsCrossCheck.getPerfusionIndex());
+                    if (signalQuality.getPoorDurationMs() >= POOR_SIGNAL_ABORT_MS) {
+                        abortForPoorSignal();
+                        return;
+                    }
+                    pushTrend(reading);
+                    instantReadingDispatcher.offer(reading);
                 }
             }
 
@@ -321,15 +351,94 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    // The trend view takes every update and redraws at display rate on its own.
+    private void pushTrend(Reading reading) {
+        int hr = reading.getInstantHR();
+        int spo2 = reading.getInstantSPO2();
+        liveTrendView.push(LiveTrendView.SERIES_HEART_RATE, hr > 0 ? hr : Float.NaN);
+        liveTrendView.push(LiveTrendView.SERIES_SPO2, spo2 > 0 ? spo2 : Float.NaN);
+    }
+
+    // Runs at most once per frame; updates that arrived in between were conflated away.
+    private void showInstantReading(Reading reading) {
+        if (!isMeasuring) return;
+
+        // A clean stream is shown before the device flags it valid, and a device-valid value
+        // is held back while the stream looks noisy.
+        Boolean hasValid = reading.getHasValidReading();
+        boolean deviceValid = hasValid != null && hasValid;
+        if (signalQuality.isAcceptable() || (deviceValid && !signalQuality.isPoor())) {
+            animateValueChange(textHeartRate, reading.getInstantHR());
+            animateValueChange(textSpo2, reading.getInstantSPO2());
+            vitalsCrossCheck.compare(reading);
+        }
+
+        if (signalQuality.isPoor() != showingPoorSignalHint) {
+            showingPoorSignalHint = signalQuality.isPoor();
+            if (showingPoorSignalHint) {
+                textStatusMessage.setText(R.string.keep_finger_steady);
+            } else {
+                textStatusMessage.setText("Measuring,please wait...");
+            }
+        }
+
+        updateProgressUI(reading);
+    }
+
+    private void finishInstantDelivery() {
+        instantReadingDispatcher.cancel();
+        instantReadingDispatcher.logMetrics("Instant readings this measurement");
+        vitalsCrossCheck.logSummary("On-device vitals this measurement");
+        Log.d(TAG, "Signal quality at end of measurement: " + signalQuality);
+    }
+
+    // Ends the session early instead of letting the device run the full 60 seconds into
+    // error_no_valid_readings.
+    private void abortForPoorSignal() {
+        Log.w(TAG, "Aborting measurement, poor signal: " + signalQuality);
+
+        commandChannel.send(CommandChannel.STOP, new ReadingDataSource.Callback<String>() {
+            @Override
+            public void onSuccess(String status) {
+                Log.d(TAG, "Device stopped after poor signal: " + status);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "STOP after poor signal failed: " + error);
+            }
+        });
+        handleError("error_no_valid_readings");
+    }
+
+    // Raw samples are only published while measuring; they feed the on-device cross-check.
+    private void listenToPpgFrames() {
+        dataSource.listenToPpgFrames(new ReadingDataSource.Callback<Map<?, ?>>() {
+            @Override
+            public void onSuccess(Map<?, ?> frame) {
+                if (isMeasuring) {
+                    vitalsCrossCheck.onFrame(frame);
+                }
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "PPG frame listener error: " + error);
+            }
+        });
+    }
+
     private void listenToLatestReading() {
-        firebaseManager.listenToLatestReading(new FirebaseManager.FirebaseCallback<Reading>() {
+        dataSource.listenToLatestReading(new ReadingDataSource.Callback<Reading>() {
             @Override
             public void onSuccess(Reading reading) {
                 if (reading != null && reading.getHeartRate() > 0 && reading.getSpo2() > 0) {
+                    readingRepository.save(reading);
                     runOnUiThread(() -> {
+                        chartView.appendReading(reading);
+                        chartLatestTimestamp = Math.max(chartLatestTimestamp, reading.getTimestamp());
                         if (!isMeasuring) {
                             updateReadingUI(reading);
-                            loadChartData();
                         }
                     });
                 }
@@ -343,13 +452,14 @@ public class MainActivity extends AppCompatActivity {
     }
 
     private void loadChartData() {
-        firebaseManager.fetchLastReadings(10, new FirebaseManager.FirebaseCallback<List<Reading>>() {
+        readingRepository.loadLastReadings(CHART_READINGS_LIMIT, new ReadingDataSource.Callback<ReadingStore>() {
             @Override
-            public void onSuccess(List<Reading> readings) {
-                runOnUiThread(() -> {
-                    Log.d(TAG, "Loaded " + readings.size() + " readings for chart");
-                    chartView.setReadings(readings);
-                });
+            public void onSuccess(ReadingStore readings) {
+                Log.d(TAG, "Loaded " + readings.size() + " readings for chart");
+                chartView.setReadings(readings);
+                if (!readings.isEmpty()) {
+                    chartLatestTimestamp = readings.getTimestamp(readings.size() - 1);
+                }
             }
 
             @Override
@@ -359,6 +469,40 @@ public class MainActivity extends AppCompatActivity {
         });
     }
 
+    // Readings saved while the activity was in the background are only picked up here, so the
+    // full reload runs only when the store has something newer than the chart.
+    private void reloadChartIfStale() {
+        readingRepository.loadLatestTimestamp(new ReadingDataSource.Callback<Long>() {
+            @Override
+            public void onSuccess(Long latest) {
+                if (latest != null && latest > chartLatestTimestamp) {
+                    loadChartData();
+                }
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "Failed to check chart data: " + error);
+            }
+        });
+    }
+
+    private void syncReadings() {
+        readingRepository.syncRecent(new ReadingRepository.SyncListener() {
+            @Override
+            public void onReadingsSynced(int count) {
+                if (count > 0) {
+                    loadChartData();
+                }
+            }
+
+            @Override
+            public void onSyncFailed(String error) {
+                Log.w(TAG, "Reading sync failed, chart shows local data: " + error);
+            }
+        });
+    }
+
     private void startMeasurement() {
         Log.d(TAG, "startMeasurement() called - sending START command to Firebase");
 
@@ -366,18 +510,27 @@ public class MainActivity extends AppCompatActivity {
         updateMeasurementUI(true);
         textStatusMessage.setText("Measuring,please wait...");
         resetProgressUI();
+        instantReadingDispatcher.resetMetrics();
+        vitalsCrossCheck.reset();
+        signalQuality.reset();
+        showingPoorSignalHint = false;
+        liveTrendView.clear();
 
-        firebaseManager.sendStartCommand(new FirebaseManager.FirebaseCallback<Void>() {
+        commandChannel.send(CommandChannel.START, new ReadingDataSource.Callback<String>() {
             @Override
-            public void onSuccess(Void data) {
-                Log.d(TAG, "START command sent successfully!");
-                Toast.makeText(MainActivity.this, "Measurement started", Toast.LENGTH_SHORT).show();
+            public void onSuccess(String status) {
+                // error_* acknowledgements are handled by the status listener.
+                if ("measuring".equals(status)) {
+                    Toast.makeText(MainActivity.this, "Measurement started", Toast.LENGTH_SHORT).show();
+                }
             }
 
             @Override
             public void onFailure(String error) {
-                Log.e(TAG, "Failed to send START command: " + error);
+                Log.e(TAG, "START command failed: " + error);
+                if (!isMeasuring) return;
                 isMeasuring = false;
+                instantReadingDispatcher.cancel();
                 updateMeasurementUI(false);
                 textStatusMessage.setText(R.string.ready);
                 resetProgressUI();
@@ -389,10 +542,12 @@ public class MainActivity extends AppCompatActivity {
     private void stopMeasurement() {
         Log.d(TAG, "stopMeasurement() called");
 
-        firebaseManager.sendStopCommand(new FirebaseManager.FirebaseCallback<Void>() {
+        commandChannel.send(CommandChannel.STOP, new ReadingDataSource.Callback<String>() {
             @Override
-            public void onSuccess(Void data) {
-                onMeasurementStopped();
+            public void onSuccess(String status) {
+                if (isMeasuring) {
+                    onMeasurementStopped();
+                }
                 Toast.makeText(MainActivity.this, "Measurement stopped", Toast.LENGTH_SHORT).show();
             }
 
@@ -515,6 +670,7 @@ public class MainActivity extends AppCompatActivity {
         Log.d(TAG, "onMeasurementCompleted() called");
 
         isMeasuring = false;
+        finishInstantDelivery();
         updateMeasurementUI(false);
         resetProgressUI();
 
@@ -532,14 +688,13 @@ public class MainActivity extends AppCompatActivity {
         }
 
         Toast.makeText(this, "Measurement completed successfully!", Toast.LENGTH_SHORT).show();
-
-        loadChartData();
     }
 
     private void onMeasurementStopped() {
         Log.d(TAG, "onMeasurementStopped() called");
 
         isMeasuring = false;
+        finishInstantDelivery();
         updateMeasurementUI(false);
         resetProgressUI();
         cardProgress.setVisibility(View.GONE);
@@ -577,6 +732,7 @@ public class MainActivity extends AppCompatActivity {
         notificationHelper.vibrateError();
 
         isMeasuring = false;
+        finishInstantDelivery();
         updateMeasurementUI(false);
         resetProgressUI();
         cardProgress.setVisibility(View.GONE);
@@ -602,6 +758,13 @@ public class MainActivity extends AppCompatActivity {
     protected void onDestroy() {
         super.onDestroy();
         stopPeriodicConnectionCheck();
-        firebaseManager.removeAllListeners();
+        closeStatusSubscription();
+        commandChannel.close();
+        livenessMonitor.stop();
+        instantReadingDispatcher.cancel();
+        // The data source is shared, so only this activity's own listeners are released.
+        dataSource.removeInstantReadingListener();
+        dataSource.removeLatestReadingListener();
+        dataSource.removePpgFrameListener();
     }
 }
\ No newline at end of file
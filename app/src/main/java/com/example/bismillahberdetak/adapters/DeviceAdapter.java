@@ -0,0 +1,102 @@
+package com.example.bismillahberdetak.adapters;
+
+import android.content.Context;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.core.content.ContextCompat;
+import androidx.recyclerview.widget.RecyclerView;
+
+import com.example.bismillahberdetak.R;
+import com.example.bismillahberdetak.models.DeviceSummary;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// One card per watched device. The summaries are the dashboard's own objects, updated in place,
+// so a dashboard change only needs the affected rows rebound.
+public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.ViewHolder> {
+
+    private static final String PLACEHOLDER = "--";
+
+    public interface OnDeviceClickListener {
+        void onDeviceClick(DeviceSummary device);
+        void onDeviceLongClick(DeviceSummary device);
+    }
+
+    private Context context;
+    private List<DeviceSummary> devices = new ArrayList<>();
+    private final OnDeviceClickListener clickListener;
+
+    public DeviceAdapter(Context context, OnDeviceClickListener clickListener) {
+        this.context = context;
+        this.clickListener = clickListener;
+    }
+
+    public void setDevices(List<DeviceSummary> devices) {
+        this.devices = devices;
+        notifyDataSetChanged();
+    }
+
+    public void notifyDevicesChanged(List<String> deviceIds) {
+        for (String deviceId : deviceIds) {
+            for (int i = 0; i < devices.size(); i++) {
+                if (devices.get(i).getDeviceId().equals(deviceId)) {
+                    notifyItemChanged(i);
+                    break;
+                }
+            }
+        }
+    }
+
+    @NonNull
+    @Override
+    public ViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
+        View view = LayoutInflater.from(context).inflate(R.layout.item_device, parent, false);
+        return new ViewHolder(view);
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
+        DeviceSummary device = devices.get(position);
+
+        holder.textDeviceId.setText(device.getDeviceId());
+        holder.textStatus.setText(device.getStatus() != null ? device.getStatus() : PLACEHOLDER);
+        holder.textLive.setVisibility(device.isLive() ? View.VISIBLE : View.GONE);
+        holder.indicatorAlive.setBackgroundTintList(ContextCompat.getColorStateList(context,
+                device.isAlive() ? R.color.status_connected : R.color.status_disconnected));
+
+        holder.textHeartRate.setText(device.getHeartRate() > 0 ? String.valueOf(device.getHeartRate()) : PLACEHOLDER);
+        holder.textSpo2.setText(device.getSpo2() > 0 ? String.valueOf(device.getSpo2()) : PLACEHOLDER);
+
+        holder.itemView.setOnClickListener(v -> clickListener.onDeviceClick(device));
+        holder.itemView.setOnLongClickListener(v -> {
+            clickListener.onDeviceLongClick(device);
+            return true;
+        });
+    }
+
+    @Override
+    public int getItemCount() {
+        return devices.size();
+    }
+
+    static class ViewHolder extends RecyclerView.ViewHolder {
+        View indicatorAlive;
+        TextView textDeviceId, textStatus, textLive;
+        TextView textHeartRate, textSpo2;
+
+        ViewHolder(View itemView) {
+            super(itemView);
+            indicatorAlive = itemView.findViewById(R.id.indicator_alive);
+            textDeviceId = itemView.findViewById(R.id.text_device_id);
+            textStatus = itemView.findViewById(R.id.text_device_status);
+            textLive = itemView.findViewById(R.id.text_live);
+            textHeartRate = itemView.findViewById(R.id.text_item_heart_rate);
+            textSpo2 = itemView.findViewById(R.id.text_item_spo2);
+        }
+    }
+}
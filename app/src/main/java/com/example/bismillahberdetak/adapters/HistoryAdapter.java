@@ -8,21 +8,69 @@ import android.widget.TextView;
 
 import androidx.annotation.NonNull;
 import androidx.cardview.widget.CardView;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.ListAdapter;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.bismillahberdetak.R;
-import com.example.bismillahberdetak.models.Reading;
+import com.example.bismillahberdetak.models.DateLabelCache;
+import com.example.bismillahberdetak.models.ReadingStore;
+import com.example.bismillahberdetak.utils.ReadingDataSource;
 
-import java.util.List;
+// Binds rows from a HistoryPageCache, so only a few pages of history are in memory however
+// long it is. The cache submits snapshots of its pages, which are diffed on a background
+// thread. Rows whose page is still loading show placeholders until the page arrives.
+public class HistoryAdapter extends ListAdapter<HistoryPageCache.Slot, HistoryAdapter.ViewHolder> {
 
-public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHolder> {
+    private static final String PLACEHOLDER = "--";
+
+    private static final DiffUtil.ItemCallback<HistoryPageCache.Slot> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<HistoryPageCache.Slot>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull HistoryPageCache.Slot oldItem,
+                                               @NonNull HistoryPageCache.Slot newItem) {
+                    return oldItem.isSameItem(newItem);
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull HistoryPageCache.Slot oldItem,
+                                                  @NonNull HistoryPageCache.Slot newItem) {
+                    return oldItem.hasSameContents(newItem);
+                }
+            };
+
+    // Newest-first readings.
+    public interface PageSource {
+        // Up to limit readings older than beforeTimestamp. Fewer than limit ends the list.
+        void loadPage(long beforeTimestamp, int limit, ReadingDataSource.Callback<ReadingStore> callback);
+
+        // Every reading from fromTimestamp (inclusive) up to beforeTimestamp (exclusive).
+        void loadRange(long fromTimestamp, long beforeTimestamp,
+                       ReadingDataSource.Callback<ReadingStore> callback);
+    }
+
+    public interface LoadListener {
+        void onLoaded(int itemCount);
+        void onLoadFailed(String error);
+    }
 
     private Context context;
-    private List<Reading> readings;
+    private final HistoryPageCache pages;
 
-    public HistoryAdapter(Context context, List<Reading> readings) {
+    public HistoryAdapter(Context context, int pageSize, LoadListener loadListener) {
+        super(DIFF_CALLBACK);
         this.context = context;
-        this.readings = readings;
+        this.pages = new HistoryPageCache(pageSize, this, loadListener);
+    }
+
+    // Replaces the listed history with the one from source, starting at its newest page.
+    public void setPageSource(PageSource source) {
+        pages.setSource(source);
+    }
+
+    // Picks up changes to the listed rows without moving the list.
+    public void refresh() {
+        pages.refresh();
     }
 
     @NonNull
@@ -34,18 +82,27 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
 
     @Override
     public void onBindViewHolder(@NonNull ViewHolder holder, int position) {
-        Reading reading = readings.get(position);
+        HistoryPageCache.Slot slot = getItem(position);
+        pages.onBound(slot, position, getItemCount());
 
-        holder.textDate.setText(reading.getFormattedDateOnly());
-        holder.textTime.setText(reading.getFormattedTime());
+        ReadingStore page = slot.rows;
+        if (page == null) {
+            holder.textDate.setText(null);
+            holder.textTime.setText(null);
+            holder.textHeartRate.setText(PLACEHOLDER);
+            holder.textSpo2.setText(PLACEHOLDER);
+            return;
+        }
 
-        holder.textHeartRate.setText(String.valueOf(reading.getHeartRate()));
-        holder.textSpo2.setText(String.valueOf(reading.getSpo2()));
-    }
+        // Reads the page's columns directly and takes labels from the shared cache, so binding
+        // allocates only the two number strings.
+        int index = slot.index;
+        long timestamp = page.getTimestamp(index);
+        holder.textDate.setText(DateLabelCache.formatDay(timestamp));
+        holder.textTime.setText(DateLabelCache.formatTime(timestamp));
 
-    @Override
-    public int getItemCount() {
-        return readings.size();
+        holder.textHeartRate.setText(String.valueOf(page.getHeartRate(index)));
+        holder.textSpo2.setText(String.valueOf(page.getSpo2(index)));
     }
 
     static class ViewHolder extends RecyclerView.ViewHolder {
@@ -62,4 +119,4 @@ public class HistoryAdapter extends RecyclerView.Adapter<HistoryAdapter.ViewHold
             textSpo2 = itemView.findViewById(R.id.text_item_spo2);
         }
     }
-}
\ No newline at end of file
+}
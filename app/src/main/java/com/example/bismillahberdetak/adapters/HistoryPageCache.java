@@ -0,0 +1,294 @@
+package com.example.bismillahberdetak.adapters;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+
+import com.example.bismillahberdetak.models.ReadingStore;
+import com.example.bismillahberdetak.utils.ReadingDataSource;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+// Newest-first history split into pages, of which only the pages around the last bound row
+// stay in memory. Each page owns a fixed timestamp range, from its oldest row up to the page
+// before it, so a page can be reloaded on its own without moving the cursors of the others.
+// Every change is published as an immutable snapshot to the adapter, whose AsyncListDiffer
+// works out the row updates; evicted pages stay in the snapshot as placeholders.
+final class HistoryPageCache {
+
+    // Pages kept on each side of the page being bound.
+    private static final int RESIDENT_RADIUS = 2;
+
+    private final int pageSize;
+    private final HistoryAdapter adapter;
+    private final HistoryAdapter.LoadListener loadListener;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final Runnable submitSnapshot = this::submitSnapshot;
+
+    private final List<Page> pages = new ArrayList<>();
+    private HistoryAdapter.PageSource source;
+    private boolean endReached = true;
+    private boolean appending = false;
+    private boolean submitPending = false;
+    private int generation = 0;
+    private Page boundPage;
+
+    HistoryPageCache(int pageSize, HistoryAdapter adapter, HistoryAdapter.LoadListener loadListener) {
+        this.pageSize = pageSize;
+        this.adapter = adapter;
+        this.loadListener = loadListener;
+    }
+
+    // Starts over from the newest page. The current rows stay on screen until it arrives.
+    @MainThread
+    void setSource(HistoryAdapter.PageSource source) {
+        this.source = source;
+        generation++;
+        pages.clear();
+        boundPage = null;
+        appending = false;
+        endReached = false;
+        append();
+    }
+
+    // Reloads the resident pages in place, so the list keeps its length and scroll position
+    // and only rows that changed are updated. Evicted pages are read fresh when next bound.
+    @MainThread
+    void refresh() {
+        if (source == null) return;
+
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if (page.rows != null) {
+                load(page, i);
+            }
+        }
+        // Rows older than the last page may have arrived too.
+        endReached = false;
+        append();
+    }
+
+    // Called for every bound row: loads the pages around it, pages in more near the end and
+    // evicts pages that have fallen out of the window.
+    @MainThread
+    void onBound(Slot slot, int position, int itemCount) {
+        int pageIndex = pages.indexOf(slot.page);
+        if (pageIndex < 0) return;
+
+        for (int i = Math.max(0, pageIndex - 1); i <= Math.min(pages.size() - 1, pageIndex + 1); i++) {
+            Page page = pages.get(i);
+            if (page.rows == null && !page.loading) {
+                load(page, i);
+            }
+        }
+        if (position >= itemCount - pageSize / 2) {
+            append();
+        }
+        if (slot.page != boundPage) {
+            boundPage = slot.page;
+            evictOutside(pageIndex - RESIDENT_RADIUS, pageIndex + RESIDENT_RADIUS);
+        }
+    }
+
+    private void append() {
+        if (appending || endReached) return;
+        appending = true;
+
+        int requestGeneration = generation;
+        long before = pages.isEmpty() ? Long.MAX_VALUE : pages.get(pages.size() - 1).lastTimestamp;
+        source.loadPage(before, pageSize, new ReadingDataSource.Callback<ReadingStore>() {
+            @Override
+            public void onSuccess(ReadingStore readings) {
+                if (requestGeneration != generation) return;
+                appending = false;
+                endReached = readings.size() < pageSize;
+
+                if (!readings.isEmpty()) {
+                    pages.add(new Page(readings, readings.getTimestamp(readings.size() - 1)));
+                }
+                scheduleSubmit();
+            }
+
+            @Override
+            public void onFailure(String error) {
+                if (requestGeneration != generation) return;
+                appending = false;
+                loadListener.onLoadFailed(error);
+            }
+        });
+    }
+
+    // Reads the page's whole range, which may now hold more or fewer rows than before. A newer
+    // request for the same page supersedes this one.
+    private void load(Page page, int pageIndex) {
+        page.loading = true;
+        int requestGeneration = generation;
+        int request = ++page.request;
+
+        long before = pageIndex == 0 ? Long.MAX_VALUE : pages.get(pageIndex - 1).lastTimestamp;
+        source.loadRange(page.lastTimestamp, before, new ReadingDataSource.Callback<ReadingStore>() {
+            @Override
+            public void onSuccess(ReadingStore readings) {
+                if (requestGeneration != generation || request != page.request) return;
+                page.loading = false;
+                restore(page, readings);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                if (requestGeneration != generation || request != page.request) return;
+                page.loading = false;
+                loadListener.onLoadFailed(error);
+            }
+        });
+    }
+
+    // A sync can land many rows inside one page's range; those are split into pages of the
+    // usual size so the resident window stays bounded.
+    private void restore(Page page, ReadingStore readings) {
+        int pageIndex = pages.indexOf(page);
+        if (pageIndex < 0) return;
+
+        if (readings.size() < 2 * pageSize) {
+            page.setRows(readings);
+        } else {
+            List<Page> split = new ArrayList<>();
+            for (int start = 0; start < readings.size(); start += pageSize) {
+                int end = Math.min(start + pageSize, readings.size());
+                long last = end == readings.size() ? page.lastTimestamp : readings.getTimestamp(end - 1);
+                split.add(new Page(readings.filter(last, readings.getTimestamp(start)), last));
+            }
+            pages.remove(pageIndex);
+            pages.addAll(pageIndex, split);
+            if (boundPage == page) {
+                boundPage = null;
+            }
+        }
+        scheduleSubmit();
+    }
+
+    private void evictOutside(int firstKept, int lastKept) {
+        boolean evicted = false;
+        for (int i = 0; i < pages.size(); i++) {
+            Page page = pages.get(i);
+            if ((i < firstKept || i > lastKept) && page.rows != null) {
+                page.rows = null;
+                evicted = true;
+            }
+        }
+        if (evicted) {
+            scheduleSubmit();
+        }
+    }
+
+    // Changes made while handling one bind or load go out as a single snapshot, and never
+    // from inside a layout pass.
+    private void scheduleSubmit() {
+        if (submitPending) return;
+        submitPending = true;
+        mainHandler.post(submitSnapshot);
+    }
+
+    private void submitSnapshot() {
+        submitPending = false;
+        Snapshot snapshot = new Snapshot(pages);
+        adapter.submitList(snapshot, () -> loadListener.onLoaded(snapshot.size()));
+    }
+
+    private static final class Page {
+        // Oldest timestamp of the page's range; it stays put when the page is reloaded.
+        final long lastTimestamp;
+        int size;
+        ReadingStore rows;
+        boolean loading = false;
+        int request = 0;
+
+        Page(ReadingStore rows, long lastTimestamp) {
+            this.lastTimestamp = lastTimestamp;
+            setRows(rows);
+        }
+
+        void setRows(ReadingStore rows) {
+            this.rows = rows;
+            this.size = rows.size();
+        }
+    }
+
+    // One row of a snapshot. rows is null while the page is evicted or not loaded yet.
+    static final class Slot {
+        final Page page;
+        final int index;
+        @Nullable final ReadingStore rows;
+
+        Slot(Page page, int index, @Nullable ReadingStore rows) {
+            this.page = page;
+            this.index = index;
+            this.rows = rows;
+        }
+
+        // Loaded rows are identified by timestamp, the store's key. A placeholder is the same
+        // item as whatever fills its place in the same page, so loading or evicting a page is
+        // a change rather than a remove and insert.
+        boolean isSameItem(Slot other) {
+            if (rows != null && other.rows != null) {
+                return rows.getTimestamp(index) == other.rows.getTimestamp(other.index);
+            }
+            return page == other.page && index == other.index;
+        }
+
+        boolean hasSameContents(Slot other) {
+            if (rows == null || other.rows == null) {
+                return rows == other.rows;
+            }
+            return rows.getHeartRate(index) == other.rows.getHeartRate(other.index)
+                    && rows.getSpo2(index) == other.rows.getSpo2(other.index);
+        }
+    }
+
+    // The page table frozen at submit time. Slots are created on demand, so a snapshot costs
+    // a few arrays per page rather than an object per row.
+    private static final class Snapshot extends AbstractList<Slot> implements RandomAccess {
+        private final Page[] pages;
+        private final ReadingStore[] rows;
+        private final int[] starts;
+        private final int size;
+
+        Snapshot(List<Page> pageList) {
+            pages = pageList.toArray(new Page[0]);
+            rows = new ReadingStore[pages.length];
+            starts = new int[pages.length];
+            int total = 0;
+            for (int i = 0; i < pages.length; i++) {
+                rows[i] = pages[i].rows;
+                starts[i] = total;
+                total += pages[i].size;
+            }
+            size = total;
+        }
+
+        @Override
+        public Slot get(int position) {
+            int pageIndex = Arrays.binarySearch(starts, position);
+            if (pageIndex < 0) {
+                pageIndex = -pageIndex - 2;
+            } else {
+                // Empty pages share their start with the next one.
+                while (pageIndex + 1 < starts.length && starts[pageIndex + 1] == position) {
+                    pageIndex++;
+                }
+            }
+            return new Slot(pages[pageIndex], position - starts[pageIndex], rows[pageIndex]);
+        }
+
+        @Override
+        public int size() {
+            return size;
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bismillahberdetak.database;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Timestamp windows (inclusive, epoch seconds) that have already been copied from Firebase,
+// kept sorted and merged so a range query only has to fetch the gaps.
+public class RangeCoverage {
+
+    private final List<long[]> ranges = new ArrayList<>();
+
+    public List<long[]> getRanges() {
+        return ranges;
+    }
+
+    public void add(long start, long end) {
+        if (start > end) return;
+
+        int i = 0;
+        while (i < ranges.size() && safeIncrement(ranges.get(i)[1]) < start) {
+            i++;
+        }
+
+        long mergedStart = start;
+        long mergedEnd = end;
+        while (i < ranges.size() && ranges.get(i)[0] <= safeIncrement(mergedEnd)) {
+            long[] range = ranges.remove(i);
+            mergedStart = Math.min(mergedStart, range[0]);
+            mergedEnd = Math.max(mergedEnd, range[1]);
+        }
+        ranges.add(i, new long[]{mergedStart, mergedEnd});
+    }
+
+    public List<long[]> missing(long start, long end) {
+        List<long[]> gaps = new ArrayList<>();
+        long cursor = start;
+
+        for (long[] range : ranges) {
+            if (cursor > end) break;
+            if (range[1] < cursor) continue;
+            if (range[0] > end) break;
+
+            if (range[0] > cursor) {
+                gaps.add(new long[]{cursor, range[0] - 1});
+            }
+            if (range[1] == Long.MAX_VALUE) {
+                return gaps;
+            }
+            cursor = range[1] + 1;
+        }
+
+        if (cursor <= end) {
+            gaps.add(new long[]{cursor, end});
+        }
+        return gaps;
+    }
+
+    private static long safeIncrement(long value) {
+        return value == Long.MAX_VALUE ? value : value + 1;
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.bismillahberdetak.database;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import androidx.annotation.WorkerThread;
+
+import com.example.bismillahberdetak.models.Reading;
+import com.example.bismillahberdetak.models.ReadingStore;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_ALGORITHM;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_DURATION;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_HEART_RATE;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_MEASUREMENT_TIME;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_METHOD;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_RANGE_END;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_RANGE_START;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_REFERENCE;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_SAMPLES;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_SPO2;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.COLUMN_TIMESTAMP;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.TABLE_READINGS;
+import static com.example.bismillahberdetak.database.ReadingDbHelper.TABLE_SYNCED_RANGES;
+
+@WorkerThread
+public class ReadingDao {
+
+    private static final String SELECT_READINGS = "SELECT " +
+            COLUMN_TIMESTAMP + ", " +
+            COLUMN_HEART_RATE + ", " +
+            COLUMN_SPO2 + ", " +
+            COLUMN_MEASUREMENT_TIME + ", " +
+            COLUMN_SAMPLES + ", " +
+            COLUMN_DURATION + ", " +
+            COLUMN_METHOD + ", " +
+            COLUMN_ALGORITHM + ", " +
+            COLUMN_REFERENCE +
+            " FROM " + TABLE_READINGS;
+
+    private static final String TAG = "ReadingDao";
+
+    private final ReadingDbHelper dbHelper;
+
+    public ReadingDao(ReadingDbHelper dbHelper) {
+        this.dbHelper = dbHelper;
+    }
+
+    // Returns how many rows were added or changed.
+    // A reading is identified by its timestamp (see ReadingDbHelper), so a second reading in a
+    // second already taken by this batch breaks that assumption: it is logged and skipped
+    // rather than allowed to overwrite the first.
+    public int insertAll(List<Reading> readings) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues values = new ContentValues();
+        Set<Long> batchTimestamps = new HashSet<>();
+        int written = 0;
+
+        db.beginTransaction();
+        try {
+            for (Reading reading : readings) {
+                if (!batchTimestamps.add(reading.getTimestamp())) {
+                    Log.w(TAG, "Skipping a second reading at timestamp " + reading.getTimestamp());
+                    continue;
+                }
+
+                values.clear();
+                values.put(COLUMN_TIMESTAMP, reading.getTimestamp());
+                values.put(COLUMN_HEART_RATE, reading.getHeartRate());
+                values.put(COLUMN_SPO2, reading.getSpo2());
+                values.put(COLUMN_MEASUREMENT_TIME, reading.getMeasurementTime());
+                values.put(COLUMN_SAMPLES, reading.getSamples());
+                values.put(COLUMN_DURATION, reading.getDuration());
+                values.put(COLUMN_METHOD, reading.getMethod());
+                values.put(COLUMN_ALGORITHM, reading.getAlgorithm());
+                values.put(COLUMN_REFERENCE, reading.getReference());
+
+                if (db.insertWithOnConflict(TABLE_READINGS, null, values, SQLiteDatabase.CONFLICT_IGNORE) != -1) {
+                    written++;
+                    continue;
+                }
+
+                // Already stored; syncs overlap at page and range edges, so this is the common case.
+                if (vitalsChanged(db, reading)) {
+                    written++;
+                }
+                db.update(TABLE_READINGS, values, COLUMN_TIMESTAMP + " = ?",
+                        new String[]{String.valueOf(reading.getTimestamp())});
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+        return written;
+    }
+
+    // Newest first, inclusive bounds in epoch seconds, strictly older than beforeTimestamp.
+    public ReadingStore queryRange(long startTimestamp, long endTimestamp, long beforeTimestamp, int limit) {
+        long upper = Math.min(endTimestamp, beforeTimestamp - 1);
+        String sql = SELECT_READINGS +
+                " WHERE " + COLUMN_TIMESTAMP + " >= ? AND " + COLUMN_TIMESTAMP + " <= ?" +
+                " ORDER BY " + COLUMN_TIMESTAMP + " DESC" +
+                (limit > 0 ? " LIMIT " + limit : "");
+
+        return query(sql, new String[]{String.valueOf(startTimestamp), String.valueOf(upper)});
+    }
+
+    // Oldest first, as the chart draws left to right.
+    public ReadingStore queryLast(int limit) {
+        String sql = "SELECT * FROM (" + SELECT_READINGS +
+                " ORDER BY " + COLUMN_TIMESTAMP + " DESC LIMIT " + limit + ")" +
+                " ORDER BY " + COLUMN_TIMESTAMP + " ASC";
+
+        return query(sql, null);
+    }
+
+    public Long getLatestTimestamp() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        try (Cursor cursor = db.rawQuery("SELECT MAX(" + COLUMN_TIMESTAMP + ") FROM " + TABLE_READINGS, null)) {
+            if (cursor.moveToFirst() && !cursor.isNull(0)) {
+                return cursor.getLong(0);
+            }
+        }
+        return null;
+    }
+
+    public RangeCoverage loadCoverage() {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+        RangeCoverage coverage = new RangeCoverage();
+
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_RANGE_START + ", " + COLUMN_RANGE_END +
+                " FROM " + TABLE_SYNCED_RANGES, null)) {
+            while (cursor.moveToNext()) {
+                coverage.add(cursor.getLong(0), cursor.getLong(1));
+            }
+        }
+        return coverage;
+    }
+
+    public void saveCoverage(RangeCoverage coverage) {
+        SQLiteDatabase db = dbHelper.getWritableDatabase();
+        ContentValues values = new ContentValues();
+
+        db.beginTransaction();
+        try {
+            db.delete(TABLE_SYNCED_RANGES, null, null);
+            for (long[] range : coverage.getRanges()) {
+                values.clear();
+                values.put(COLUMN_RANGE_START, range[0]);
+                values.put(COLUMN_RANGE_END, range[1]);
+                db.insertWithOnConflict(TABLE_SYNCED_RANGES, null, values, SQLiteDatabase.CONFLICT_REPLACE);
+            }
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private boolean vitalsChanged(SQLiteDatabase db, Reading reading) {
+        try (Cursor cursor = db.rawQuery("SELECT " + COLUMN_HEART_RATE + ", " + COLUMN_SPO2 +
+                        " FROM " + TABLE_READINGS + " WHERE " + COLUMN_TIMESTAMP + " = ?",
+                new String[]{String.valueOf(reading.getTimestamp())})) {
+            return !cursor.moveToFirst()
+                    || cursor.getInt(0) != reading.getHeartRate()
+                    || cursor.getInt(1) != reading.getSpo2();
+        }
+    }
+
+    private ReadingStore query(String sql, String[] args) {
+        SQLiteDatabase db = dbHelper.getReadableDatabase();
+
+        try (Cursor cursor = db.rawQuery(sql, args)) {
+            ReadingStore store = new ReadingStore(cursor.getCount());
+            while (cursor.moveToNext()) {
+                store.add(
+                        cursor.getLong(0),
+                        cursor.getInt(1),
+                        cursor.getInt(2),
+                        cursor.getInt(3),
+                        cursor.getInt(4),
+                        cursor.getInt(5),
+                        cursor.getString(6),
+                        cursor.getString(7),
+                        cursor.getString(8));
+            }
+            return store;
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.bismillahberdetak.database;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+import android.util.Log;
+
+public class ReadingDbHelper extends SQLiteOpenHelper {
+
+    private static final String TAG = "ReadingDbHelper";
+    private static final String DATABASE_NAME = "berdetak.db";
+    private static final int DATABASE_VERSION = 4;
+
+    public static final String TABLE_READINGS = "readings";
+    public static final String COLUMN_TIMESTAMP = "timestamp";
+    public static final String COLUMN_HEART_RATE = "heart_rate";
+    public static final String COLUMN_SPO2 = "spo2";
+    public static final String COLUMN_MEASUREMENT_TIME = "measurement_time";
+    public static final String COLUMN_SAMPLES = "samples";
+    public static final String COLUMN_DURATION = "duration";
+    public static final String COLUMN_METHOD = "method";
+    public static final String COLUMN_ALGORITHM = "algorithm";
+    public static final String COLUMN_REFERENCE = "reference";
+
+    public static final String TABLE_SYNCED_RANGES = "synced_ranges";
+    public static final String COLUMN_RANGE_START = "range_start";
+    public static final String COLUMN_RANGE_END = "range_end";
+
+    private static ReadingDbHelper instance;
+
+    public static synchronized ReadingDbHelper getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReadingDbHelper(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReadingDbHelper(Context context) {
+        super(context, DATABASE_NAME, null, DATABASE_VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        // timestamp is the rowid, so the table itself is the timestamp index. It also identifies
+        // the reading: the device runs one measurement at a time and each lasts several seconds,
+        // so two readings never share a second. The locally saved `latest` copy has no Firebase
+        // key, which is why the key is not used instead. ReadingDao enforces this on insert.
+        db.execSQL("CREATE TABLE " + TABLE_READINGS + " (" +
+                COLUMN_TIMESTAMP + " INTEGER PRIMARY KEY, " +
+                COLUMN_HEART_RATE + " INTEGER NOT NULL, " +
+                COLUMN_SPO2 + " INTEGER NOT NULL, " +
+                COLUMN_MEASUREMENT_TIME + " INTEGER, " +
+                COLUMN_SAMPLES + " INTEGER, " +
+                COLUMN_DURATION + " INTEGER, " +
+                COLUMN_METHOD + " TEXT, " +
+                COLUMN_ALGORITHM + " TEXT, " +
+                COLUMN_REFERENCE + " TEXT)");
+
+        db.execSQL("CREATE TABLE " + TABLE_SYNCED_RANGES + " (" +
+                COLUMN_RANGE_START + " INTEGER NOT NULL, " +
+                COLUMN_RANGE_END + " INTEGER NOT NULL)");
+        Log.d(TAG, "Database created");
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Everything here is a copy of Firebase, so a resync is always safe.
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_READINGS);
+        db.execSQL("DROP TABLE IF EXISTS " + TABLE_SYNCED_RANGES);
+        // Version 3 also had a rollups table, which is no longer created.
+        db.execSQL("DROP TABLE IF EXISTS rollups");
+        onCreate(db);
+    }
+}
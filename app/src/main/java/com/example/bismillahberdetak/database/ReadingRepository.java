@@ -0,0 +1,302 @@
+package com.example.bismillahberdetak.database;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import com.example.bismillahberdetak.models.HistoryPage;
+import com.example.bismillahberdetak.models.Reading;
+import com.example.bismillahberdetak.models.ReadingStore;
+import com.example.bismillahberdetak.utils.DataSourceProvider;
+import com.example.bismillahberdetak.utils.ReadingDataSource;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class ReadingRepository {
+
+    private static final String TAG = "ReadingRepository";
+    private static final String PREFS_NAME = "reading_sync";
+    private static final String KEY_BACKFILL_DONE = "backfill_done";
+    private static final String KEY_BACKFILL_TIMESTAMP = "backfill_cursor_timestamp";
+    private static final String KEY_BACKFILL_KEY = "backfill_cursor_key";
+    private static final String KEY_SYNC_WATERMARK = "sync_watermark";
+
+    public static final int PAGE_SIZE = 50;
+
+    private static ReadingRepository instance;
+
+    private final ReadingDao readingDao;
+    private final ReadingDataSource dataSource;
+    private final SharedPreferences syncPrefs;
+    private final ExecutorService dbExecutor = Executors.newSingleThreadExecutor();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final List<SyncListener> backfillListeners = new ArrayList<>();
+
+    private RangeCoverage coverage;
+    private boolean isSyncingRecent = false;
+    private boolean isBackfilling = false;
+
+    public interface SyncListener {
+        void onReadingsSynced(int count);
+        void onSyncFailed(String error);
+    }
+
+    public static synchronized ReadingRepository getInstance(Context context) {
+        if (instance == null) {
+            instance = new ReadingRepository(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    private ReadingRepository(Context context) {
+        readingDao = new ReadingDao(ReadingDbHelper.getInstance(context));
+        dataSource = DataSourceProvider.getDataSource();
+        syncPrefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    public void loadLastReadings(int limit, ReadingDataSource.Callback<ReadingStore> callback) {
+        runQuery(() -> readingDao.queryLast(limit), callback);
+    }
+
+    // Newest stored timestamp, or null while the store is empty.
+    public void loadLatestTimestamp(ReadingDataSource.Callback<Long> callback) {
+        runQuery(readingDao::getLatestTimestamp, callback);
+    }
+
+    public void loadPage(long startTimestamp, long endTimestamp, long beforeTimestamp, int limit,
+                         ReadingDataSource.Callback<ReadingStore> callback) {
+        runQuery(() -> readingDao.queryRange(startTimestamp, endTimestamp, beforeTimestamp, limit), callback);
+    }
+
+    // Like loadPage over all history, but stops at the oldest end of the synced range that
+    // reaches the newest reading. Older rows stored by a range sync can sit behind a gap the
+    // backfill has not filled yet; paging past them would skip that gap for good, so they only
+    // show up once the backfill has reached them. A short page means: backfill, then retry.
+    public void loadSyncedPage(long beforeTimestamp, int limit,
+                               ReadingDataSource.Callback<ReadingStore> callback) {
+        runQuery(() -> readingDao.queryRange(getSyncedFloor(), Long.MAX_VALUE, beforeTimestamp, limit), callback);
+    }
+
+    public void loadRange(long startTimestamp, long endTimestamp,
+                          ReadingDataSource.Callback<ReadingStore> callback) {
+        runQuery(() -> readingDao.queryRange(startTimestamp, endTimestamp, Long.MAX_VALUE, 0), callback);
+    }
+
+    // Local copy only, so the reading shows up before the next sync. It does not move the sync
+    // watermark: readings pushed before it may not have been fetched yet.
+    public void save(Reading reading) {
+        dbExecutor.execute(() -> readingDao.insertAll(Collections.singletonList(reading)));
+    }
+
+    public boolean isBackfillComplete() {
+        return syncPrefs.getBoolean(KEY_BACKFILL_DONE, false);
+    }
+
+    // Pulls readings newer than the newest one fetched from Firebase so far. Without a
+    // watermark only the newest page is fetched (which sets it); older history is fetched per
+    // filter window or one page at a time on demand.
+    public void syncRecent(SyncListener listener) {
+        if (isSyncingRecent) return;
+        isSyncingRecent = true;
+
+        dbExecutor.execute(() -> {
+            boolean storeEmpty = readingDao.getLatestTimestamp() == null;
+            mainHandler.post(() -> {
+                // An empty store (first run or a schema upgrade) makes any saved cursor stale.
+                if (storeEmpty || !syncPrefs.contains(KEY_SYNC_WATERMARK)) {
+                    syncPrefs.edit().clear().apply();
+                    isSyncingRecent = false;
+                    backfillNextPage(listener);
+                    return;
+                }
+
+                long watermark = syncPrefs.getLong(KEY_SYNC_WATERMARK, 0);
+                long now = nowSeconds();
+                dataSource.fetchReadingsSince(watermark, new ReadingDataSource.Callback<List<Reading>>() {
+                    @Override
+                    public void onSuccess(List<Reading> readings) {
+                        store(readings, watermark, now, listener, () -> {
+                            advanceWatermark(readings);
+                            isSyncingRecent = false;
+                        });
+                    }
+
+                    @Override
+                    public void onFailure(String error) {
+                        isSyncingRecent = false;
+                        listener.onSyncFailed(error);
+                    }
+                });
+            });
+        });
+    }
+
+    // Fetches only the parts of [startTimestamp, endTimestamp] that have not been copied yet.
+    // Nothing after "now" can be marked as synced, so that part is queried but not recorded.
+    public void syncRange(long startTimestamp, long endTimestamp, SyncListener listener) {
+        long coveredEnd = Math.min(endTimestamp, nowSeconds());
+
+        dbExecutor.execute(() -> {
+            List<long[]> gaps = getCoverage().missing(startTimestamp, coveredEnd);
+            mainHandler.post(() -> {
+                if (gaps.isEmpty()) {
+                    Log.d(TAG, "Range " + startTimestamp + ".." + endTimestamp + " already synced");
+                    listener.onReadingsSynced(0);
+                    return;
+                }
+
+                for (long[] gap : gaps) {
+                    long queryEnd = gap[1] == coveredEnd ? endTimestamp : gap[1];
+                    fetchGap(gap[0], queryEnd, gap[1], listener);
+                }
+            });
+        });
+    }
+
+    public void backfillNextPage(SyncListener listener) {
+        if (isBackfillComplete()) {
+            listener.onReadingsSynced(0);
+            return;
+        }
+        backfillListeners.add(listener);
+        if (isBackfilling) return;
+        isBackfilling = true;
+
+        HistoryPage cursor = null;
+        String cursorKey = syncPrefs.getString(KEY_BACKFILL_KEY, null);
+        if (cursorKey != null) {
+            cursor = new HistoryPage(Collections.emptyList(),
+                    syncPrefs.getLong(KEY_BACKFILL_TIMESTAMP, 0), cursorKey, true);
+        }
+        long pageEnd = cursor != null ? cursor.getCursorTimestamp() : nowSeconds();
+        boolean newestPage = cursor == null;
+
+        dataSource.fetchHistoryPage(cursor, new ReadingDataSource.Callback<HistoryPage>() {
+            @Override
+            public void onSuccess(HistoryPage page) {
+                SharedPreferences.Editor editor = syncPrefs.edit();
+                long pageStart;
+                if (page.hasMore()) {
+                    editor.putLong(KEY_BACKFILL_TIMESTAMP, page.getCursorTimestamp());
+                    editor.putString(KEY_BACKFILL_KEY, page.getCursorKey());
+                    pageStart = page.getCursorTimestamp();
+                } else {
+                    editor.putBoolean(KEY_BACKFILL_DONE, true);
+                    pageStart = Long.MIN_VALUE;
+                }
+
+                store(page.getReadings(), pageStart, pageEnd, null, () -> {
+                    editor.apply();
+                    if (newestPage) {
+                        advanceWatermark(page.getReadings());
+                    }
+                    if (!page.hasMore()) {
+                        Log.d(TAG, "History backfill complete");
+                    }
+                    for (SyncListener waiting : finishBackfill()) {
+                        waiting.onReadingsSynced(page.getReadings().size());
+                    }
+                });
+            }
+
+            @Override
+            public void onFailure(String error) {
+                for (SyncListener waiting : finishBackfill()) {
+                    waiting.onSyncFailed(error);
+                }
+            }
+        });
+    }
+
+    // Only Firebase fetches that reach the newest reading move the watermark.
+    private void advanceWatermark(List<Reading> fetched) {
+        long watermark = syncPrefs.getLong(KEY_SYNC_WATERMARK, Long.MIN_VALUE);
+        for (Reading reading : fetched) {
+            watermark = Math.max(watermark, reading.getTimestamp());
+        }
+        // Nothing fetched yet (an empty account): 0 makes the next sync fetch everything.
+        syncPrefs.edit().putLong(KEY_SYNC_WATERMARK, watermark == Long.MIN_VALUE ? 0 : watermark).apply();
+    }
+
+    private List<SyncListener> finishBackfill() {
+        List<SyncListener> waiting = new ArrayList<>(backfillListeners);
+        backfillListeners.clear();
+        isBackfilling = false;
+        return waiting;
+    }
+
+    private void fetchGap(long queryStart, long queryEnd, long coveredEnd, SyncListener listener) {
+        dataSource.fetchRange(queryStart, queryEnd, new ReadingDataSource.Callback<List<Reading>>() {
+            @Override
+            public void onSuccess(List<Reading> readings) {
+                store(readings, queryStart, coveredEnd, listener, null);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                listener.onSyncFailed(error);
+            }
+        });
+    }
+
+    private void store(List<Reading> readings, long coveredStart, long coveredEnd,
+                       SyncListener listener, Runnable done) {
+        dbExecutor.execute(() -> {
+            int count = readings.isEmpty() ? 0 : readingDao.insertAll(readings);
+            RangeCoverage current = getCoverage();
+            current.add(coveredStart, coveredEnd);
+            readingDao.saveCoverage(current);
+
+            mainHandler.post(() -> {
+                Log.d(TAG, "Synced " + count + " readings");
+                if (done != null) {
+                    done.run();
+                }
+                if (listener != null) {
+                    listener.onReadingsSynced(count);
+                }
+            });
+        });
+    }
+
+    // Start of the newest covered range; a completed backfill extends it to Long.MIN_VALUE.
+    // Only touched on dbExecutor.
+    private long getSyncedFloor() {
+        List<long[]> ranges = getCoverage().getRanges();
+        return ranges.isEmpty() ? Long.MAX_VALUE : ranges.get(ranges.size() - 1)[0];
+    }
+
+    // Only touched on dbExecutor.
+    private RangeCoverage getCoverage() {
+        if (coverage == null) {
+            coverage = readingDao.loadCoverage();
+        }
+        return coverage;
+    }
+
+    private static long nowSeconds() {
+        return System.currentTimeMillis() / 1000;
+    }
+
+    private <T> void runQuery(Query<T> query, ReadingDataSource.Callback<T> callback) {
+        dbExecutor.execute(() -> {
+            try {
+                T result = query.run();
+                mainHandler.post(() -> callback.onSuccess(result));
+            } catch (Exception e) {
+                Log.e(TAG, "Local query failed: " + e.getMessage());
+                mainHandler.post(() -> callback.onFailure(e.getMessage()));
+            }
+        });
+    }
+
+    private interface Query<T> {
+        T run();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.bismillahberdetak.models;
+
+import androidx.annotation.MainThread;
+
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+// "MMM dd, yyyy" and "HH:mm" labels for epoch-second timestamps without a formatter per call.
+// Day labels are cached by local epoch-day in a small direct-mapped table, so a list of
+// readings formats each day once. Time labels depend only on the minute of the day and all
+// 1440 of them are built lazily from digits. After warm-up a lookup allocates nothing.
+// Labels use the locale and time zone current when the cache was built; call reset() when
+// either changes. Used from the main thread only.
+@MainThread
+public final class DateLabelCache {
+
+    private static final int SECONDS_PER_DAY = 24 * 60 * 60;
+    private static final int MINUTES_PER_DAY = 24 * 60;
+    private static final int DAY_SLOTS = 64;
+
+    private static DateLabelCache instance;
+
+    private final TimeZone timeZone;
+    private final char zeroDigit;
+    private final SimpleDateFormat dayFormat;
+    private final Date scratchDate = new Date();
+    private final long[] dayKeys = new long[DAY_SLOTS];
+    private final String[] dayLabels = new String[DAY_SLOTS];
+    private final String[] timeLabels = new String[MINUTES_PER_DAY];
+
+    private DateLabelCache(Locale locale, TimeZone timeZone) {
+        this.timeZone = timeZone;
+        zeroDigit = DecimalFormatSymbols.getInstance(locale).getZeroDigit();
+        dayFormat = new SimpleDateFormat("MMM dd, yyyy", locale);
+        dayFormat.setTimeZone(timeZone);
+        Arrays.fill(dayKeys, Long.MIN_VALUE);
+    }
+
+    private static DateLabelCache get() {
+        if (instance == null) {
+            instance = new DateLabelCache(Locale.getDefault(), TimeZone.getDefault());
+        }
+        return instance;
+    }
+
+    // Drops every label, so the next lookup rebuilds them for the current locale and time zone.
+    public static void reset() {
+        instance = null;
+    }
+
+    public static String formatDay(long timestampSeconds) {
+        return get().day(timestampSeconds);
+    }
+
+    public static String formatTime(long timestampSeconds) {
+        return get().time(timestampSeconds);
+    }
+
+    private long localSeconds(long timestampSeconds) {
+        return timestampSeconds + timeZone.getOffset(timestampSeconds * 1000) / 1000;
+    }
+
+    private String day(long timestampSeconds) {
+        long epochDay = Math.floorDiv(localSeconds(timestampSeconds), SECONDS_PER_DAY);
+        int slot = (int) Math.floorMod(epochDay, DAY_SLOTS);
+        if (dayKeys[slot] != epochDay) {
+            scratchDate.setTime(timestampSeconds * 1000);
+            dayLabels[slot] = dayFormat.format(scratchDate);
+            dayKeys[slot] = epochDay;
+        }
+        return dayLabels[slot];
+    }
+
+    private String time(long timestampSeconds) {
+        int minuteOfDay = (int) (Math.floorMod(localSeconds(timestampSeconds), SECONDS_PER_DAY) / 60);
+        String label = timeLabels[minuteOfDay];
+        if (label == null) {
+            int hour = minuteOfDay / 60;
+            int minute = minuteOfDay % 60;
+            label = new String(new char[]{
+                    (char) (zeroDigit + hour / 10), (char) (zeroDigit + hour % 10), ':',
+                    (char) (zeroDigit + minute / 10), (char) (zeroDigit + minute % 10)
+            });
+            timeLabels[minuteOfDay] = label;
+        }
+        return label;
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.bismillahberdetak.models;
+
+// One row of the multi-device dashboard. Updated in place as device events arrive.
+public class DeviceSummary {
+
+    private final String deviceId;
+    private String status;
+    private boolean alive;
+    private boolean live;
+    private int heartRate;
+    private int spo2;
+    private int progress;
+    private long lastUpdateMillis;
+
+    public DeviceSummary(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public boolean isAlive() {
+        return alive;
+    }
+
+    public void setAlive(boolean alive) {
+        this.alive = alive;
+    }
+
+    // Whether the instant reading stream is currently attached for this device.
+    public boolean isLive() {
+        return live;
+    }
+
+    public void setLive(boolean live) {
+        this.live = live;
+    }
+
+    public int getHeartRate() {
+        return heartRate;
+    }
+
+    public void setHeartRate(int heartRate) {
+        this.heartRate = heartRate;
+    }
+
+    public int getSpo2() {
+        return spo2;
+    }
+
+    public void setSpo2(int spo2) {
+        this.spo2 = spo2;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public void setProgress(int progress) {
+        this.progress = progress;
+    }
+
+    public long getLastUpdateMillis() {
+        return lastUpdateMillis;
+    }
+
+    public void setLastUpdateMillis(long lastUpdateMillis) {
+        this.lastUpdateMillis = lastUpdateMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "DeviceSummary{" +
+                "deviceId='" + deviceId + '\'' +
+                ", status='" + status + '\'' +
+                ", alive=" + alive +
+                ", live=" + live +
+                ", heartRate=" + heartRate +
+                ", spo2=" + spo2 +
+                ", progress=" + progress +
+                '}';
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.bismillahberdetak.models;
+
+import java.util.List;
+
+public class HistoryPage {
+    private final List<Reading> readings;
+    private final long cursorTimestamp;
+    private final String cursorKey;
+    private final boolean hasMore;
+
+    public HistoryPage(List<Reading> readings, long cursorTimestamp, String cursorKey, boolean hasMore) {
+        this.readings = readings;
+        this.cursorTimestamp = cursorTimestamp;
+        this.cursorKey = cursorKey;
+        this.hasMore = hasMore;
+    }
+
+    public List<Reading> getReadings() {
+        return readings;
+    }
+
+    public long getCursorTimestamp() {
+        return cursorTimestamp;
+    }
+
+    public String getCursorKey() {
+        return cursorKey;
+    }
+
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    @Override
+    public String toString() {
+        return "HistoryPage{" +
+                "readings=" + readings.size() +
+                ", cursorTimestamp=" + cursorTimestamp +
+                ", cursorKey='" + cursorKey + '\'' +
+                ", hasMore=" + hasMore +
+                '}';
+    }
+}
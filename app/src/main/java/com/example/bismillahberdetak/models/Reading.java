@@ -1,8 +1,6 @@
 package com.example.bismillahberdetak.models;
 
-import java.text.SimpleDateFormat;
 import java.util.Date;
-import java.util.Locale;
 
 public class Reading {
     private int heartRate;
@@ -198,18 +196,15 @@ public class Reading {
     }
 
     public String getFormattedDate() {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy HH:mm", Locale.getDefault());
-        return sdf.format(new Date(timestamp * 1000));
+        return DateLabelCache.formatDay(timestamp) + " " + DateLabelCache.formatTime(timestamp);
     }
 
     public String getFormattedTime() {
-        SimpleDateFormat sdf = new SimpleDateFormat("HH:mm", Locale.getDefault());
-        return sdf.format(new Date(timestamp * 1000));
+        return DateLabelCache.formatTime(timestamp);
     }
 
     public String getFormattedDateOnly() {
-        SimpleDateFormat sdf = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
-        return sdf.format(new Date(timestamp * 1000));
+        return DateLabelCache.formatDay(timestamp);
     }
 
     public Date getDate() {
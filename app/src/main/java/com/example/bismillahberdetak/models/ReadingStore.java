@@ -0,0 +1,212 @@
+package com.example.bismillahberdetak.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+// Column-per-field history storage. method/algorithm/reference repeat on every row, so
+// they are kept once in a dictionary and referenced by code.
+public class ReadingStore {
+
+    private static final int DEFAULT_CAPACITY = 16;
+    private static final short NO_STRING = -1;
+
+    private long[] timestamps;
+    private short[] heartRates;
+    private byte[] spo2s;
+    private int[] measurementTimes;
+    private int[] samples;
+    private int[] durations;
+    private short[] methodCodes;
+    private short[] algorithmCodes;
+    private short[] referenceCodes;
+    private int size;
+
+    private final List<String> dictionary = new ArrayList<>();
+    private final Map<String, Short> dictionaryCodes = new HashMap<>();
+
+    public ReadingStore() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public ReadingStore(int capacity) {
+        allocate(Math.max(capacity, 1));
+    }
+
+    public static ReadingStore of(List<Reading> readings) {
+        ReadingStore store = new ReadingStore(readings.size());
+        for (Reading reading : readings) {
+            store.add(reading);
+        }
+        return store;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void clear() {
+        size = 0;
+        dictionary.clear();
+        dictionaryCodes.clear();
+    }
+
+    public void add(Reading reading) {
+        add(reading.getTimestamp(), reading.getHeartRate(), reading.getSpo2(),
+                reading.getMeasurementTime(), reading.getSamples(), reading.getDuration(),
+                reading.getMethod(), reading.getAlgorithm(), reading.getReference());
+    }
+
+    public void add(long timestamp, int heartRate, int spo2, int measurementTime, int sampleCount,
+                    int duration, String method, String algorithm, String reference) {
+        ensureCapacity(size + 1);
+        timestamps[size] = timestamp;
+        heartRates[size] = (short) heartRate;
+        spo2s[size] = (byte) spo2;
+        measurementTimes[size] = measurementTime;
+        samples[size] = sampleCount;
+        durations[size] = duration;
+        methodCodes[size] = encode(method);
+        algorithmCodes[size] = encode(algorithm);
+        referenceCodes[size] = encode(reference);
+        size++;
+    }
+
+    public void addAll(ReadingStore other) {
+        ensureCapacity(size + other.size);
+
+        short[] remap = new short[other.dictionary.size()];
+        for (int i = 0; i < remap.length; i++) {
+            remap[i] = encode(other.dictionary.get(i));
+        }
+
+        System.arraycopy(other.timestamps, 0, timestamps, size, other.size);
+        System.arraycopy(other.heartRates, 0, heartRates, size, other.size);
+        System.arraycopy(other.spo2s, 0, spo2s, size, other.size);
+        System.arraycopy(other.measurementTimes, 0, measurementTimes, size, other.size);
+        System.arraycopy(other.samples, 0, samples, size, other.size);
+        System.arraycopy(other.durations, 0, durations, size, other.size);
+        for (int i = 0; i < other.size; i++) {
+            methodCodes[size + i] = remapCode(other.methodCodes[i], remap);
+            algorithmCodes[size + i] = remapCode(other.algorithmCodes[i], remap);
+            referenceCodes[size + i] = remapCode(other.referenceCodes[i], remap);
+        }
+        size += other.size;
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public int getHeartRate(int index) {
+        return heartRates[index];
+    }
+
+    public int getSpo2(int index) {
+        return spo2s[index] & 0xFF;
+    }
+
+    public int getMeasurementTime(int index) {
+        return measurementTimes[index];
+    }
+
+    public int getSamples(int index) {
+        return samples[index];
+    }
+
+    public int getDuration(int index) {
+        return durations[index];
+    }
+
+    public String getMethod(int index) {
+        return decode(methodCodes[index]);
+    }
+
+    public String getAlgorithm(int index) {
+        return decode(algorithmCodes[index]);
+    }
+
+    public String getReference(int index) {
+        return decode(referenceCodes[index]);
+    }
+
+    public Reading toReading(int index) {
+        return new Reading(getHeartRate(index), getSpo2(index), getTimestamp(index),
+                getMeasurementTime(index), getSamples(index), getDuration(index),
+                getMethod(index), getAlgorithm(index), getReference(index));
+    }
+
+    public List<Reading> toReadings() {
+        List<Reading> readings = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            readings.add(toReading(i));
+        }
+        return readings;
+    }
+
+    // Rows whose timestamp falls in [startTimestamp, endTimestamp], order preserved.
+    public ReadingStore filter(long startTimestamp, long endTimestamp) {
+        ReadingStore result = new ReadingStore(size);
+        for (int i = 0; i < size; i++) {
+            long timestamp = timestamps[i];
+            if (timestamp >= startTimestamp && timestamp <= endTimestamp) {
+                result.add(timestamp, heartRates[i], getSpo2(i), measurementTimes[i], samples[i],
+                        durations[i], getMethod(i), getAlgorithm(i), getReference(i));
+            }
+        }
+        return result;
+    }
+
+    private short encode(String value) {
+        if (value == null) return NO_STRING;
+
+        Short code = dictionaryCodes.get(value);
+        if (code == null) {
+            code = (short) dictionary.size();
+            dictionary.add(value);
+            dictionaryCodes.put(value, code);
+        }
+        return code;
+    }
+
+    private String decode(short code) {
+        return code == NO_STRING ? null : dictionary.get(code);
+    }
+
+    private static short remapCode(short code, short[] remap) {
+        return code == NO_STRING ? NO_STRING : remap[code];
+    }
+
+    private void allocate(int capacity) {
+        timestamps = new long[capacity];
+        heartRates = new short[capacity];
+        spo2s = new byte[capacity];
+        measurementTimes = new int[capacity];
+        samples = new int[capacity];
+        durations = new int[capacity];
+        methodCodes = new short[capacity];
+        algorithmCodes = new short[capacity];
+        referenceCodes = new short[capacity];
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= timestamps.length) return;
+
+        int capacity = Math.max(required, timestamps.length + (timestamps.length >> 1));
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        heartRates = Arrays.copyOf(heartRates, capacity);
+        spo2s = Arrays.copyOf(spo2s, capacity);
+        measurementTimes = Arrays.copyOf(measurementTimes, capacity);
+        samples = Arrays.copyOf(samples, capacity);
+        durations = Arrays.copyOf(durations, capacity);
+        methodCodes = Arrays.copyOf(methodCodes, capacity);
+        algorithmCodes = Arrays.copyOf(algorithmCodes, capacity);
+        referenceCodes = Arrays.copyOf(referenceCodes, capacity);
+    }
+}
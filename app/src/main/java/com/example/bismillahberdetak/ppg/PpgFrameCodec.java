@@ -0,0 +1,109 @@
+package com.example.bismillahberdetak.ppg;
+
+import java.util.Arrays;
+
+// Packed raw-waveform frame written by the ESP32 under users/<id>/ppgFrames/<pushKey>:
+//
+//   seq   frame sequence number, +1 per frame
+//   rate  sample rate in Hz
+//   n     samples per channel
+//   red   channel payload, base64
+//   ir    channel payload, base64
+//
+// A channel payload is the first sample followed by n-1 sample-to-sample deltas, each
+// zigzag-encoded and written as an unsigned LEB128 varint. PPG deltas are small, so most
+// samples take one or two bytes instead of a JSON node each.
+public final class PpgFrameCodec {
+
+    public static final String FIELD_SEQUENCE = "seq";
+    public static final String FIELD_SAMPLE_RATE = "rate";
+    public static final String FIELD_SAMPLE_COUNT = "n";
+    public static final String FIELD_RED = "red";
+    public static final String FIELD_IR = "ir";
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".toCharArray();
+    private static final byte[] DECODE_TABLE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE_TABLE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE_TABLE[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private PpgFrameCodec() {
+    }
+
+    // Mirrors the firmware encoder; used by the fake data source and for tooling.
+    public static String encodeChannel(int[] samples, int offset, int count) {
+        byte[] packed = new byte[count * 5];
+        int length = 0;
+        int previous = 0;
+        for (int i = 0; i < count; i++) {
+            int value = samples[offset + i];
+            length = writeVarint(packed, length, zigzag(value - previous));
+            previous = value;
+        }
+        return encodeBase64(packed, length);
+    }
+
+    // Largest number of bytes a base64 string of this length can decode to.
+    public static int maxDecodedLength(int base64Length) {
+        return (base64Length + 3) / 4 * 3;
+    }
+
+    // Decodes base64 chars into dst without intermediate copies. Returns the byte count,
+    // or -1 if the input holds a character outside the alphabet.
+    public static int decodeBase64(CharSequence src, byte[] dst) {
+        int bits = 0;
+        int bitCount = 0;
+        int length = 0;
+
+        for (int i = 0; i < src.length(); i++) {
+            char c = src.charAt(i);
+            if (c == '=') break;
+            int value = c < 128 ? DECODE_TABLE[c] : -1;
+            if (value < 0) return -1;
+
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                dst[length++] = (byte) (bits >> bitCount);
+            }
+        }
+        return length;
+    }
+
+    static int zigzag(int value) {
+        return (value << 1) ^ (value >> 31);
+    }
+
+    static int unzigzag(int value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    private static int writeVarint(byte[] dst, int position, int value) {
+        while ((value & ~0x7F) != 0) {
+            dst[position++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        dst[position++] = (byte) value;
+        return position;
+    }
+
+    private static String encodeBase64(byte[] src, int length) {
+        StringBuilder builder = new StringBuilder((length + 2) / 3 * 4);
+        for (int i = 0; i < length; i += 3) {
+            int b0 = src[i] & 0xFF;
+            int b1 = i + 1 < length ? src[i + 1] & 0xFF : 0;
+            int b2 = i + 2 < length ? src[i + 2] & 0xFF : 0;
+            builder.append(ALPHABET[b0 >> 2]);
+            builder.append(ALPHABET[((b0 & 0x03) << 4) | (b1 >> 4)]);
+            builder.append(i + 1 < length ? ALPHABET[((b1 & 0x0F) << 2) | (b2 >> 6)] : '=');
+            builder.append(i + 2 < length ? ALPHABET[b2 & 0x3F] : '=');
+        }
+        return builder.toString();
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.bismillahberdetak.ppg;
+
+import android.util.Log;
+
+import java.util.Map;
+
+// Streams PpgFrameCodec frames into a PpgRingBuffer. Scratch buffers are reused across frames
+// and only grow when a frame is larger than any seen before, so steady-state decoding does
+// not allocate. Frames must arrive in sequence order; late or repeated frames are skipped and
+// sequence gaps are counted.
+public class PpgFrameDecoder {
+
+    private static final String TAG = "PpgFrameDecoder";
+
+    private final PpgRingBuffer buffer;
+    private byte[] redBytes = new byte[0];
+    private byte[] irBytes = new byte[0];
+    private int varintEnd;
+
+    private long lastSequence = -1;
+    private int sampleRate;
+    private long decodedFrames = 0;
+    private long missedFrames = 0;
+    private long rejectedFrames = 0;
+
+    public PpgFrameDecoder(PpgRingBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    public PpgRingBuffer getBuffer() {
+        return buffer;
+    }
+
+    // Returns the number of samples written to the buffer.
+    public int decode(Map<?, ?> frame) {
+        Object sequence = frame.get(PpgFrameCodec.FIELD_SEQUENCE);
+        Object count = frame.get(PpgFrameCodec.FIELD_SAMPLE_COUNT);
+        Object rate = frame.get(PpgFrameCodec.FIELD_SAMPLE_RATE);
+        Object red = frame.get(PpgFrameCodec.FIELD_RED);
+        Object ir = frame.get(PpgFrameCodec.FIELD_IR);
+
+        if (!(sequence instanceof Number) || !(count instanceof Number)
+                || !(red instanceof CharSequence) || !(ir instanceof CharSequence)) {
+            rejectedFrames++;
+            return 0;
+        }
+        if (rate instanceof Number) {
+            sampleRate = ((Number) rate).intValue();
+        }
+        return decode(((Number) sequence).longValue(), ((Number) count).intValue(),
+                (CharSequence) red, (CharSequence) ir);
+    }
+
+    public int decode(long sequence, int sampleCount, CharSequence red, CharSequence ir) {
+        if (lastSequence >= 0 && sequence <= lastSequence) {
+            return 0;
+        }
+
+        redBytes = ensureCapacity(redBytes, PpgFrameCodec.maxDecodedLength(red.length()));
+        irBytes = ensureCapacity(irBytes, PpgFrameCodec.maxDecodedLength(ir.length()));
+        int redLength = PpgFrameCodec.decodeBase64(red, redBytes);
+        int irLength = PpgFrameCodec.decodeBase64(ir, irBytes);
+        if (redLength < 0 || irLength < 0) {
+            rejectedFrames++;
+            Log.w(TAG, "Frame " + sequence + " has an invalid payload");
+            return 0;
+        }
+
+        if (lastSequence >= 0 && sequence > lastSequence + 1) {
+            missedFrames += sequence - lastSequence - 1;
+        }
+        lastSequence = sequence;
+
+        int redPosition = 0;
+        int irPosition = 0;
+        int redValue = 0;
+        int irValue = 0;
+        int written = 0;
+        while (written < sampleCount && redPosition < redLength && irPosition < irLength) {
+            redValue += PpgFrameCodec.unzigzag(readVarint(redBytes, redPosition, redLength));
+            redPosition = varintEnd;
+            irValue += PpgFrameCodec.unzigzag(readVarint(irBytes, irPosition, irLength));
+            irPosition = varintEnd;
+            buffer.write(redValue, irValue);
+            written++;
+        }
+
+        decodedFrames++;
+        if (written < sampleCount) {
+            Log.w(TAG, "Frame " + sequence + " declared " + sampleCount + " samples, decoded " + written);
+        }
+        return written;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public long getDecodedFrames() {
+        return decodedFrames;
+    }
+
+    // Frames skipped over according to the sequence numbers.
+    public long getMissedFrames() {
+        return missedFrames;
+    }
+
+    public long getRejectedFrames() {
+        return rejectedFrames;
+    }
+
+    public void reset() {
+        lastSequence = -1;
+        decodedFrames = 0;
+        missedFrames = 0;
+        rejectedFrames = 0;
+        buffer.clear();
+    }
+
+    private static byte[] ensureCapacity(byte[] bytes, int needed) {
+        return bytes.length >= needed ? bytes : new byte[needed];
+    }
+
+    // Reads one varint starting at position; the position after it is left in varintEnd.
+    private int readVarint(byte[] bytes, int position, int limit) {
+        int result = 0;
+        int shift = 0;
+        while (position < limit && shift < 35) {
+            byte b = bytes[position++];
+            result |= (b & 0x7F) << shift;
+            shift += 7;
+            if ((b & 0x80) == 0) break;
+        }
+        varintEnd = position;
+        return result;
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.bismillahberdetak.ppg;
+
+// Fixed-capacity red/IR sample history. Writing never allocates; once full, the oldest
+// samples are overwritten. Index 0 is the oldest sample still held.
+public class PpgRingBuffer {
+
+    private final int[] red;
+    private final int[] ir;
+    private int head = 0;
+    private int size = 0;
+    private long totalSamples = 0;
+
+    public PpgRingBuffer(int capacity) {
+        red = new int[capacity];
+        ir = new int[capacity];
+    }
+
+    public void write(int redSample, int irSample) {
+        red[head] = redSample;
+        ir[head] = irSample;
+        head = head + 1 == red.length ? 0 : head + 1;
+        if (size < red.length) {
+            size++;
+        }
+        totalSamples++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int capacity() {
+        return red.length;
+    }
+
+    // Samples written since creation or the last clear, including overwritten ones.
+    public long getTotalSamples() {
+        return totalSamples;
+    }
+
+    public int getRed(int index) {
+        return red[physicalIndex(index)];
+    }
+
+    public int getIr(int index) {
+        return ir[physicalIndex(index)];
+    }
+
+    // Copies the newest count samples, oldest first, into the given arrays. Returns how many were copied.
+    public int copyLatest(int count, int[] redOut, int[] irOut) {
+        int n = Math.min(count, size);
+        int start = size - n;
+        for (int i = 0; i < n; i++) {
+            int p = physicalIndex(start + i);
+            redOut[i] = red[p];
+            irOut[i] = ir[p];
+        }
+        return n;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        totalSamples = 0;
+    }
+
+    private int physicalIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + ", size " + size);
+        }
+        int p = head - size + index;
+        return p < 0 ? p + red.length : p;
+    }
+}
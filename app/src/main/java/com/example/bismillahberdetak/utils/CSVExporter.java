@@ -9,6 +9,7 @@ import android.util.Log;
 import androidx.core.content.FileProvider;
 
 import com.example.bismillahberdetak.models.Reading;
+import com.example.bismillahberdetak.models.ReadingStore;
 import com.opencsv.CSVWriter;
 
 import java.io.File;
@@ -32,6 +33,10 @@ public class CSVExporter {
     }
 
     public static void exportToCSV(Context context, List<Reading> readings, ExportCallback callback) {
+        exportToCSV(context, readings == null ? null : ReadingStore.of(readings), callback);
+    }
+
+    public static void exportToCSV(Context context, ReadingStore readings, ExportCallback callback) {
         if (readings == null || readings.isEmpty()) {
             callback.onFailure("No data to export");
             return;
@@ -62,14 +67,15 @@ public class CSVExporter {
             SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
             SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm:ss", Locale.getDefault());
 
-            for (Reading reading : readings) {
-                Date date = new Date(reading.getTimestamp() * 1000);
+            Date date = new Date();
+            for (int i = 0; i < readings.size(); i++) {
+                date.setTime(readings.getTimestamp(i) * 1000);
 
                 String[] row = {
                         dateFormat.format(date),
                         timeFormat.format(date),
-                        String.valueOf(reading.getHeartRate()),
-                        String.valueOf(reading.getSpo2())
+                        String.valueOf(readings.getHeartRate(i)),
+                        String.valueOf(readings.getSpo2(i))
                 };
 
                 writer.writeNext(row);
@@ -115,6 +121,10 @@ public class CSVExporter {
     }
 
     public static void exportAndShare(Context context, List<Reading> readings, ExportCallback callback) {
+        exportAndShare(context, readings == null ? null : ReadingStore.of(readings), callback);
+    }
+
+    public static void exportAndShare(Context context, ReadingStore readings, ExportCallback callback) {
         exportToCSV(context, readings, new ExportCallback() {
             @Override
             public void onSuccess(File file) {
@@ -0,0 +1,240 @@
+package com.example.bismillahberdetak.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Sends start/stop commands with an id and timestamp and waits for the device to acknowledge
+// them. A device that echoes the id into ackId is matched on it exactly, and the status that
+// comes with the echo is the outcome. Older firmware only updates its status, so for it a
+// status change seen after the command was written counts; a value replayed while the
+// listener attaches is never taken as an acknowledgement.
+// An unacknowledged STOP is written again. START is never rewritten: a device that is merely
+// slow would see a second start and could restart a session in progress.
+// The time from the first write to the acknowledgement is recorded per command.
+@MainThread
+public class CommandChannel {
+
+    private static final String TAG = "CommandChannel";
+
+    public static final String START = "start";
+    public static final String STOP = "stop";
+
+    private static final long ACK_TIMEOUT_MS = 3000;
+    private static final int MAX_ATTEMPTS = 3;
+
+    private final ReadingDataSource dataSource;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Map<String, LatencyHistogram> latencies = new HashMap<>();
+    private final Runnable timeoutRunnable = this::onAckTimeout;
+
+    private Subscription statusSubscription;
+    private Subscription ackSubscription;
+    private PendingCommand pending;
+    private String lastStatus;
+    private boolean attaching = false;
+    private boolean deviceEchoesIds = false;
+    private int sequence = 0;
+
+    public CommandChannel(ReadingDataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    public void open() {
+        if (statusSubscription != null) return;
+
+        attaching = true;
+        ackSubscription = dataSource.listenToAckId(new ReadingDataSource.Callback<String>() {
+            @Override
+            public void onSuccess(String ackId) {
+                onAckId(ackId);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.w(TAG, "Ack listener cancelled: " + error);
+            }
+        });
+        statusSubscription = dataSource.listenToStatus(new ReadingDataSource.Callback<String>() {
+            @Override
+            public void onSuccess(String status) {
+                onStatus(status);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                statusSubscription = null;
+                fail("Status listener cancelled: " + error);
+            }
+        });
+        attaching = false;
+    }
+
+    public void close() {
+        if (statusSubscription != null) {
+            statusSubscription.close();
+            statusSubscription = null;
+        }
+        if (ackSubscription != null) {
+            ackSubscription.close();
+            ackSubscription = null;
+        }
+        handler.removeCallbacks(timeoutRunnable);
+        pending = null;
+    }
+
+    // The callback receives the status the device acknowledged with.
+    public void send(String command, ReadingDataSource.Callback<String> callback) {
+        open();
+
+        if (pending != null) {
+            // The newer command decides the device state, so the old one is dropped quietly.
+            Log.w(TAG, "Command " + pending.id + " superseded by " + command);
+            pending = null;
+        }
+
+        String id = command + "-" + System.currentTimeMillis() + "-" + (++sequence);
+        pending = new PendingCommand(command, id, callback);
+        write(pending);
+    }
+
+    public LatencyHistogram getLatencyHistogram(String command) {
+        LatencyHistogram histogram = latencies.get(command);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            latencies.put(command, histogram);
+        }
+        return histogram;
+    }
+
+    private void write(PendingCommand command) {
+        command.attempts++;
+        scheduleTimeout();
+
+        dataSource.sendCommand(command.name, command.id, new ReadingDataSource.Callback<Void>() {
+            @Override
+            public void onSuccess(Void data) {
+                Log.d(TAG, "Sent " + command.id + " (attempt " + command.attempts + ")");
+            }
+
+            @Override
+            public void onFailure(String error) {
+                if (pending == command) {
+                    fail(error);
+                }
+            }
+        });
+    }
+
+    private void scheduleTimeout() {
+        handler.removeCallbacks(timeoutRunnable);
+        handler.postDelayed(timeoutRunnable, ACK_TIMEOUT_MS);
+    }
+
+    // The echo and the status are separate nodes and may arrive in either order.
+    private void onAckId(String ackId) {
+        if (attaching || pending == null || ackId == null || !ackId.equals(pending.id)) return;
+
+        deviceEchoesIds = true;
+        pending.echoed = true;
+        if (pending.status != null && isAcknowledgement(pending.name, pending.status)) {
+            acknowledge(pending.status);
+        }
+    }
+
+    private void onStatus(String status) {
+        if (status == null) return;
+
+        lastStatus = status;
+        // A replayed value is whatever the device last wrote, possibly for an older command.
+        if (attaching || pending == null) return;
+
+        pending.status = status;
+        if ((pending.echoed || !deviceEchoesIds) && isAcknowledgement(pending.name, status)) {
+            acknowledge(status);
+        }
+    }
+
+    private void acknowledge(String status) {
+        PendingCommand command = pending;
+        pending = null;
+        handler.removeCallbacks(timeoutRunnable);
+
+        long latency = SystemClock.elapsedRealtime() - command.sentAt;
+        LatencyHistogram histogram = getLatencyHistogram(command.name);
+        histogram.record(latency);
+        Log.d(TAG, command.id + " acknowledged with " + status + " after " + latency + "ms ("
+                + command.attempts + " attempts), " + command.name + " latency: " + histogram);
+
+        command.callback.onSuccess(status);
+    }
+
+    private void onAckTimeout() {
+        if (pending == null) return;
+
+        if (pending.echoed && lastStatus != null) {
+            // The device took the command but its status didn't move, e.g. already measuring.
+            acknowledge(lastStatus);
+            return;
+        }
+        // Without a status there is nothing to report, so this counts as a missed ack.
+
+        pending.timeouts++;
+        if (pending.timeouts >= MAX_ATTEMPTS) {
+            fail("Device did not acknowledge " + pending.name);
+        } else if (STOP.equals(pending.name)) {
+            Log.w(TAG, "No ack for " + pending.id + ", retrying");
+            write(pending);
+        } else {
+            Log.w(TAG, "No ack for " + pending.id + " yet, still waiting");
+            scheduleTimeout();
+        }
+    }
+
+    private void fail(String error) {
+        handler.removeCallbacks(timeoutRunnable);
+        PendingCommand command = pending;
+        pending = null;
+        if (command != null) {
+            Log.e(TAG, command.id + " failed: " + error);
+            command.callback.onFailure(error);
+        }
+    }
+
+    private static boolean isAcknowledgement(String command, String status) {
+        if (status.startsWith("error_")) {
+            return START.equals(command);
+        }
+        switch (command) {
+            case START:
+                return "measuring".equals(status);
+            case STOP:
+                return "stopped".equals(status) || "ready".equals(status) || "completed".equals(status);
+            default:
+                return false;
+        }
+    }
+
+    private static class PendingCommand {
+        final String name;
+        final String id;
+        final ReadingDataSource.Callback<String> callback;
+        final long sentAt = SystemClock.elapsedRealtime();
+        int attempts = 0;
+        int timeouts = 0;
+        boolean echoed = false;
+        String status;
+
+        PendingCommand(String name, String id, ReadingDataSource.Callback<String> callback) {
+            this.name = name;
+            this.id = id;
+            this.callback = callback;
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.bismillahberdetak.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+import android.view.Choreographer;
+
+import androidx.annotation.MainThread;
+
+// Holds only the newest pending value and hands it to the consumer at most once per display
+// frame (or once per minIntervalMs). Values that arrive in between replace the pending one
+// and are counted as dropped.
+@MainThread
+public class ConflatingDispatcher<T> {
+
+    private static final String TAG = "ConflatingDispatcher";
+
+    public static final long EVERY_FRAME = 0;
+
+    public interface Consumer<T> {
+        void accept(T value);
+    }
+
+    private final Consumer<T> consumer;
+    private final long minIntervalMs;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Choreographer.FrameCallback frameCallback = frameTimeNanos -> deliver();
+    private final Runnable deliverRunnable = this::deliver;
+
+    private T pending;
+    private boolean scheduled = false;
+    private long lastDeliveryTime = 0;
+
+    private long receivedCount = 0;
+    private long deliveredCount = 0;
+    private long droppedCount = 0;
+
+    public ConflatingDispatcher(Consumer<T> consumer) {
+        this(EVERY_FRAME, consumer);
+    }
+
+    public ConflatingDispatcher(long minIntervalMs, Consumer<T> consumer) {
+        this.minIntervalMs = minIntervalMs;
+        this.consumer = consumer;
+    }
+
+    public void offer(T value) {
+        receivedCount++;
+        if (pending != null) {
+            droppedCount++;
+        }
+        pending = value;
+
+        if (scheduled) return;
+        scheduled = true;
+
+        if (minIntervalMs == EVERY_FRAME) {
+            Choreographer.getInstance().postFrameCallback(frameCallback);
+        } else {
+            long wait = lastDeliveryTime + minIntervalMs - SystemClock.uptimeMillis();
+            handler.postDelayed(deliverRunnable, Math.max(0, wait));
+        }
+    }
+
+    public void cancel() {
+        if (scheduled) {
+            Choreographer.getInstance().removeFrameCallback(frameCallback);
+            handler.removeCallbacks(deliverRunnable);
+            scheduled = false;
+        }
+        if (pending != null) {
+            droppedCount++;
+            pending = null;
+        }
+    }
+
+    public long getReceivedCount() {
+        return receivedCount;
+    }
+
+    public long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    public long getDroppedCount() {
+        return droppedCount;
+    }
+
+    public void resetMetrics() {
+        receivedCount = 0;
+        deliveredCount = 0;
+        droppedCount = 0;
+    }
+
+    public void logMetrics(String label) {
+        Log.d(TAG, label + ": received=" + receivedCount + ", delivered=" + deliveredCount
+                + ", dropped=" + droppedCount);
+    }
+
+    private void deliver() {
+        scheduled = false;
+        T value = pending;
+        pending = null;
+        if (value == null) return;
+
+        lastDeliveryTime = SystemClock.uptimeMillis();
+        deliveredCount++;
+        consumer.accept(value);
+    }
+}
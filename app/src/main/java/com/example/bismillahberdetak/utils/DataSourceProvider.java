@@ -0,0 +1,22 @@
+package com.example.bismillahberdetak.utils;
+
+// Single place the app gets its ReadingDataSource from, so a fake can be installed before
+// any screen or repository is created.
+public final class DataSourceProvider {
+
+    private static ReadingDataSource dataSource;
+
+    private DataSourceProvider() {
+    }
+
+    public static synchronized ReadingDataSource getDataSource() {
+        if (dataSource == null) {
+            dataSource = new FirebaseManager();
+        }
+        return dataSource;
+    }
+
+    public static synchronized void setDataSource(ReadingDataSource source) {
+        dataSource = source;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.bismillahberdetak.utils;
+
+import androidx.annotation.MainThread;
+
+import com.example.bismillahberdetak.models.DeviceSummary;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Status of every watched device in one place. Updates mutate the device's summary and mark
+// it dirty; observers hear about all dirty devices at most once per frame.
+@MainThread
+public class DeviceDashboard {
+
+    public interface Observer {
+        void onDevicesChanged(List<String> changedDeviceIds);
+    }
+
+    private final Map<String, DeviceSummary> devices = new LinkedHashMap<>();
+    private final Set<String> dirty = new LinkedHashSet<>();
+    private final List<Observer> observers = new ArrayList<>();
+    private final ConflatingDispatcher<Boolean> changeDispatcher =
+            new ConflatingDispatcher<>(changed -> notifyObservers());
+
+    public void addObserver(Observer observer) {
+        observers.add(observer);
+    }
+
+    public void removeObserver(Observer observer) {
+        observers.remove(observer);
+    }
+
+    public DeviceSummary get(String deviceId) {
+        return devices.get(deviceId);
+    }
+
+    public List<DeviceSummary> getDevices() {
+        return new ArrayList<>(devices.values());
+    }
+
+    public int size() {
+        return devices.size();
+    }
+
+    void addDevice(String deviceId) {
+        if (!devices.containsKey(deviceId)) {
+            devices.put(deviceId, new DeviceSummary(deviceId));
+            markDirty(deviceId);
+        }
+    }
+
+    void removeDevice(String deviceId) {
+        if (devices.remove(deviceId) != null) {
+            markDirty(deviceId);
+        }
+    }
+
+    void updateStatus(String deviceId, String status) {
+        DeviceSummary summary = devices.get(deviceId);
+        if (summary == null) return;
+
+        summary.setStatus(status);
+        summary.setLastUpdateMillis(System.currentTimeMillis());
+        markDirty(deviceId);
+    }
+
+    void updateLiveness(String deviceId, boolean alive) {
+        DeviceSummary summary = devices.get(deviceId);
+        if (summary == null || summary.isAlive() == alive) return;
+
+        summary.setAlive(alive);
+        markDirty(deviceId);
+    }
+
+    void updateLive(String deviceId, boolean live) {
+        DeviceSummary summary = devices.get(deviceId);
+        if (summary == null || summary.isLive() == live) return;
+
+        summary.setLive(live);
+        markDirty(deviceId);
+    }
+
+    void updateReading(String deviceId, int heartRate, int spo2, int progress) {
+        DeviceSummary summary = devices.get(deviceId);
+        if (summary == null) return;
+
+        summary.setHeartRate(heartRate);
+        summary.setSpo2(spo2);
+        summary.setProgress(progress);
+        summary.setLastUpdateMillis(System.currentTimeMillis());
+        markDirty(deviceId);
+    }
+
+    void release() {
+        changeDispatcher.cancel();
+        observers.clear();
+    }
+
+    private void markDirty(String deviceId) {
+        dirty.add(deviceId);
+        changeDispatcher.offer(Boolean.TRUE);
+    }
+
+    private void notifyObservers() {
+        if (dirty.isEmpty()) return;
+
+        List<String> changed = new ArrayList<>(dirty);
+        dirty.clear();
+        for (Observer observer : new ArrayList<>(observers)) {
+            observer.onDevicesChanged(changed);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.bismillahberdetak.utils;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+
+// Tracks the ESP32 heartbeat from lastSeen pushes. Ages are measured against server time
+// (local clock + .info/serverTimeOffset), and a local deadline fires when no newer
+// heartbeat arrives within the timeout, so no polling reads are needed.
+@MainThread
+public class DeviceLivenessMonitor {
+
+    private static final String TAG = "DeviceLivenessMonitor";
+
+    // Reported as the age when the device has no lastSeen at all.
+    public static final long AGE_UNKNOWN = -1;
+
+    public interface LivenessListener {
+        void onLivenessChanged(boolean alive, long lastSeenAgeMs);
+    }
+
+    private final ReadingDataSource dataSource;
+    private final long timeoutMs;
+    private final LivenessListener listener;
+    private final Handler handler = new Handler(Looper.getMainLooper());
+    private final Runnable deadlineRunnable = this::evaluate;
+
+    private Subscription lastSeenSubscription;
+    private Subscription offsetSubscription;
+    private long serverTimeOffsetMs = 0;
+    private Long lastSeenMs;
+    private long missingSinceMs;
+    private Boolean alive;
+
+    public DeviceLivenessMonitor(ReadingDataSource dataSource, long timeoutMs, LivenessListener listener) {
+        this.dataSource = dataSource;
+        this.timeoutMs = timeoutMs;
+        this.listener = listener;
+    }
+
+    public void start() {
+        if (lastSeenSubscription != null) return;
+
+        lastSeenMs = null;
+        missingSinceMs = SystemClock.elapsedRealtime();
+        handler.postDelayed(deadlineRunnable, timeoutMs);
+
+        offsetSubscription = dataSource.listenToServerTimeOffset(new ReadingDataSource.Callback<Long>() {
+            @Override
+            public void onSuccess(Long offset) {
+                serverTimeOffsetMs = offset;
+                evaluate();
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.w(TAG, "Server time offset unavailable, using local clock: " + error);
+            }
+        });
+
+        lastSeenSubscription = dataSource.listenToLastSeen(new ReadingDataSource.Callback<Long>() {
+            @Override
+            public void onSuccess(Long lastSeen) {
+                // lastSeen is written by the device in epoch seconds.
+                if (lastSeen == null && lastSeenMs != null) {
+                    missingSinceMs = SystemClock.elapsedRealtime();
+                }
+                lastSeenMs = lastSeen != null ? lastSeen * 1000 : null;
+                evaluate();
+            }
+
+            @Override
+            public void onFailure(String error) {
+                Log.e(TAG, "lastSeen listener error: " + error);
+                lastSeenSubscription = null;
+                handler.removeCallbacks(deadlineRunnable);
+            }
+        });
+    }
+
+    public void stop() {
+        if (lastSeenSubscription != null) {
+            lastSeenSubscription.close();
+            lastSeenSubscription = null;
+        }
+        if (offsetSubscription != null) {
+            offsetSubscription.close();
+            offsetSubscription = null;
+        }
+        handler.removeCallbacks(deadlineRunnable);
+        alive = null;
+    }
+
+    public boolean isRunning() {
+        return lastSeenSubscription != null;
+    }
+
+    public boolean isAlive() {
+        return alive != null && alive;
+    }
+
+    private void evaluate() {
+        handler.removeCallbacks(deadlineRunnable);
+        if (lastSeenMs == null) {
+            // Never written or deleted: the device gets one timeout to write it before it
+            // counts as gone.
+            long waited = SystemClock.elapsedRealtime() - missingSinceMs;
+            if (waited < timeoutMs) {
+                handler.postDelayed(deadlineRunnable, timeoutMs - waited + 1);
+            } else {
+                report(false, AGE_UNKNOWN);
+            }
+            return;
+        }
+
+        long serverNow = System.currentTimeMillis() + serverTimeOffsetMs;
+        long age = Math.max(0, serverNow - lastSeenMs);
+        boolean nowAlive = age <= timeoutMs;
+
+        if (nowAlive) {
+            handler.postDelayed(deadlineRunnable, timeoutMs - age + 1);
+        }
+        report(nowAlive, age);
+    }
+
+    private void report(boolean nowAlive, long age) {
+        if (alive == null || alive != nowAlive) {
+            alive = nowAlive;
+            Log.d(TAG, "ESP32 " + (nowAlive ? "alive" : "timed out") + ", last seen "
+                    + (age == AGE_UNKNOWN ? "never" : age + "ms ago"));
+            listener.onLivenessChanged(nowAlive, age);
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package com.example.bismillahberdetak.utils;
+
+import com.example.bismillahberdetak.models.HistoryPage;
+import com.example.bismillahberdetak.models.Reading;
+import com.example.bismillahberdetak.ppg.PpgFrameCodec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-process ReadingDataSource with configurable latency and throughput, for driving listener
+// fan-out, decoding and filtering without a device. Its only Android dependency is logging
+// through ListenerRegistry, so on a plain JVM it needs android.util.Log stubbed (unit tests
+// get that from returnDefaultValues).
+// Values are stored as raw maps and decoded on delivery, like the Firebase implementation.
+public class FakeReadingDataSource implements ReadingDataSource {
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final Executor callbackExecutor;
+
+    private volatile long latencyMs = 0;
+    private volatile int maxEventsPerSecond = 0;
+    private volatile boolean connected = true;
+    private volatile boolean autoAcknowledge = true;
+    private long nextEventSlotNanos = 0;
+
+    private final Stream<String> status = new Stream<>();
+    private final Stream<String> ackId = new Stream<>();
+    private final Stream<Map<String, Object>> instantReading = new Stream<>();
+    private final Stream<Map<String, Object>> latest = new Stream<>();
+    private final Stream<Map<String, Object>> ppgFrames = new Stream<>();
+    private final Stream<Long> lastSeen = new Stream<>();
+    private final Stream<Long> serverTimeOffset = new Stream<>();
+    private Subscription instantSubscription;
+    private Subscription latestSubscription;
+    private Subscription ppgFrameSubscription;
+
+    // Sorted by (timestamp, key), the same order as orderByChild("timestamp").
+    private final List<Entry> history = new ArrayList<>();
+    private long keySequence = 0;
+
+    private volatile String lastCommand;
+    private volatile String lastCommandId;
+    private final AtomicLong deliveredEvents = new AtomicLong();
+
+    // Callbacks run on the internal scheduler thread.
+    public FakeReadingDataSource() {
+        this(null);
+    }
+
+    // Callbacks are handed to callbackExecutor, e.g. the main thread executor in the app.
+    public FakeReadingDataSource(Executor callbackExecutor) {
+        this.callbackExecutor = callbackExecutor;
+        serverTimeOffset.value = 0L;
+    }
+
+    public void setLatencyMs(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+
+    // Caps how many stream events per second are delivered; later events queue up. 0 = unlimited.
+    public void setMaxEventsPerSecond(int maxEventsPerSecond) {
+        this.maxEventsPerSecond = maxEventsPerSecond;
+    }
+
+    public void setConnected(boolean connected) {
+        this.connected = connected;
+    }
+
+    // When on, start/stop commands are answered with "measuring"/"stopped" and their id in
+    // ackId after the latency.
+    public void setAutoAcknowledge(boolean autoAcknowledge) {
+        this.autoAcknowledge = autoAcknowledge;
+    }
+
+    public String getLastCommand() {
+        return lastCommand;
+    }
+
+    public String getLastCommandId() {
+        return lastCommandId;
+    }
+
+    public long getDeliveredEvents() {
+        return deliveredEvents.get();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+
+    public void publishStatus(String value) {
+        publish(status, value);
+    }
+
+    public void publishInstantReading(Reading reading) {
+        publish(instantReading, toValues(reading));
+    }
+
+    public void publishInstantReading(Map<String, Object> values) {
+        publish(instantReading, values);
+    }
+
+    public void publishLatest(Reading reading) {
+        publish(latest, toValues(reading));
+    }
+
+    public void publishPpgFrame(long sequence, int sampleRate, int[] red, int[] ir, int offset, int count) {
+        Map<String, Object> frame = new HashMap<>();
+        frame.put(PpgFrameCodec.FIELD_SEQUENCE, sequence);
+        frame.put(PpgFrameCodec.FIELD_SAMPLE_RATE, sampleRate);
+        frame.put(PpgFrameCodec.FIELD_SAMPLE_COUNT, count);
+        frame.put(PpgFrameCodec.FIELD_RED, PpgFrameCodec.encodeChannel(red, offset, count));
+        frame.put(PpgFrameCodec.FIELD_IR, PpgFrameCodec.encodeChannel(ir, offset, count));
+        publish(ppgFrames, frame);
+    }
+
+    public void publishLastSeen(long epochSeconds) {
+        publish(lastSeen, epochSeconds);
+    }
+
+    public void publishServerTimeOffset(long offsetMs) {
+        publish(serverTimeOffset, offsetMs);
+    }
+
+    public String addReading(Reading reading) {
+        return addReading(toValues(reading));
+    }
+
+    public synchronized String addReading(Map<String, Object> values) {
+        String key = String.format("-fake%012d", keySequence++);
+        Entry entry = new Entry(key, timestampOf(values), values);
+        int index = Collections.binarySearch(history, entry, FakeReadingDataSource::compare);
+        history.add(index < 0 ? -index - 1 : index, entry);
+        return key;
+    }
+
+    public void addReadings(List<Reading> readings) {
+        for (Reading reading : readings) {
+            addReading(reading);
+        }
+    }
+
+    public synchronized int getHistorySize() {
+        return history.size();
+    }
+
+    @Override
+    public void sendCommand(String command, String commandId, Callback<Void> callback) {
+        lastCommand = command;
+        lastCommandId = commandId;
+        respond(() -> {
+            if (!connected) {
+                callback.onFailure("Not connected");
+                return;
+            }
+            callback.onSuccess(null);
+        });
+
+        if (autoAcknowledge && connected) {
+            if (CommandChannel.START.equals(command)) {
+                publishStatus("measuring");
+            } else if (CommandChannel.STOP.equals(command)) {
+                publishStatus("stopped");
+            }
+            publish(ackId, commandId);
+        }
+    }
+
+    @Override
+    public Subscription listenToStatus(Callback<String> callback) {
+        return status.subscribe(callback);
+    }
+
+    @Override
+    public Subscription listenToAckId(Callback<String> callback) {
+        return ackId.subscribe(callback);
+    }
+
+    @Override
+    public void listenToInstantReading(Callback<Reading> callback) {
+        removeInstantReadingListener();
+        instantSubscription = instantReading.subscribe(decoding(callback, ReadingDecoder.FIELDS_LIVE));
+    }
+
+    @Override
+    public void removeInstantReadingListener() {
+        if (instantSubscription != null) {
+            instantSubscription.close();
+            instantSubscription = null;
+        }
+    }
+
+    @Override
+    public void listenToLatestReading(Callback<Reading> callback) {
+        removeLatestReadingListener();
+        latestSubscription = latest.subscribe(decoding(callback, ReadingDecoder.FIELDS_HISTORY));
+    }
+
+    @Override
+    public void removeLatestReadingListener() {
+        if (latestSubscription != null) {
+            latestSubscription.close();
+            latestSubscription = null;
+        }
+    }
+
+    @Override
+    public void listenToPpgFrames(Callback<Map<?, ?>> callback) {
+        removePpgFrameListener();
+        // Child-added semantics: only frames published after subscribing are delivered.
+        ppgFrames.value = null;
+        ppgFrameSubscription = ppgFrames.subscribe(new Callback<Map<String, Object>>() {
+            @Override
+            public void onSuccess(Map<String, Object> frame) {
+                callback.onSuccess(frame);
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        });
+    }
+
+    @Override
+    public void removePpgFrameListener() {
+        if (ppgFrameSubscription != null) {
+            ppgFrameSubscription.close();
+            ppgFrameSubscription = null;
+        }
+    }
+
+    @Override
+    public Subscription listenToLastSeen(Callback<Long> callback) {
+        return lastSeen.subscribe(callback);
+    }
+
+    @Override
+    public Subscription listenToServerTimeOffset(Callback<Long> callback) {
+        return serverTimeOffset.subscribe(callback);
+    }
+
+    @Override
+    public void checkConnection(Callback<Boolean> callback) {
+        boolean value = connected;
+        respond(() -> callback.onSuccess(value));
+    }
+
+    @Override
+    public void fetchHistoryPage(HistoryPage previousPage, Callback<HistoryPage> callback) {
+        List<Entry> page;
+        synchronized (this) {
+            int end = history.size();
+            if (previousPage != null) {
+                Entry cursor = new Entry(previousPage.getCursorKey(), previousPage.getCursorTimestamp(), null);
+                int index = Collections.binarySearch(history, cursor, FakeReadingDataSource::compare);
+                end = index < 0 ? -index - 1 : index;
+            }
+            int start = Math.max(0, end - FirebaseManager.HISTORY_PAGE_SIZE);
+            page = new ArrayList<>(history.subList(start, end));
+        }
+
+        query(callback, () -> {
+            List<Reading> readings = decodeHistory(page);
+            Collections.reverse(readings);
+            Entry oldest = page.isEmpty() ? null : page.get(0);
+            return new HistoryPage(readings, oldest != null ? oldest.timestamp : 0,
+                    oldest != null ? oldest.key : null, page.size() == FirebaseManager.HISTORY_PAGE_SIZE);
+        });
+    }
+
+    @Override
+    public void fetchReadingsSince(long timestamp, Callback<List<Reading>> callback) {
+        if (timestamp == Long.MAX_VALUE) {
+            query(callback, ArrayList::new);
+            return;
+        }
+        fetchRange(timestamp + 1, Long.MAX_VALUE, callback);
+    }
+
+    @Override
+    public void fetchRange(long startTimestamp, long endTimestamp,
+                           Callback<List<Reading>> callback) {
+        List<Entry> matches = new ArrayList<>();
+        synchronized (this) {
+            for (Entry entry : history) {
+                if (entry.timestamp > endTimestamp) break;
+                if (entry.timestamp >= startTimestamp) {
+                    matches.add(entry);
+                }
+            }
+        }
+        query(callback, () -> decodeHistory(matches));
+    }
+
+    @Override
+    public int getActiveListenerCount() {
+        int count = 0;
+        for (Stream<?> stream : new Stream<?>[] {status, ackId, instantReading, latest, ppgFrames, lastSeen}) {
+            if (stream.isAttached()) count++;
+        }
+        return count;
+    }
+
+    public static Map<String, Object> toValues(Reading reading) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("heartRate", reading.getHeartRate());
+        values.put("spo2", reading.getSpo2());
+        values.put("timestamp", reading.getTimestamp());
+        values.put("measurementTime", reading.getMeasurementTime());
+        values.put("samples", reading.getSamples());
+        values.put("duration", reading.getDuration());
+        putIfNotNull(values, "method", reading.getMethod());
+        putIfNotNull(values, "algorithm", reading.getAlgorithm());
+        putIfNotNull(values, "reference", reading.getReference());
+        putIfNotNull(values, "hasValidReading", reading.getHasValidReading());
+        values.put("instantHR", reading.getInstantHR());
+        values.put("instantSPO2", reading.getInstantSPO2());
+        values.put("currentAvgHR", reading.getCurrentAvgHR());
+        values.put("currentAvgSPO2", reading.getCurrentAvgSPO2());
+        values.put("validReadings", reading.getValidReadings());
+        values.put("secondsPassed", reading.getSecondsPassed());
+        values.put("totalSeconds", reading.getTotalSeconds());
+        values.put("progress", reading.getProgress());
+        putIfNotNull(values, "status", reading.getStatus());
+        return values;
+    }
+
+    private static void putIfNotNull(Map<String, Object> values, String key, Object value) {
+        if (value != null) {
+            values.put(key, value);
+        }
+    }
+
+    private static List<Reading> decodeHistory(List<Entry> entries) {
+        List<Reading> readings = new ArrayList<>(entries.size());
+        for (Entry entry : entries) {
+            Reading reading = ReadingDecoder.decode(entry.values, ReadingDecoder.FIELDS_HISTORY);
+            if (reading.getHeartRate() > 0 && reading.getSpo2() > 0) {
+                readings.add(reading);
+            }
+        }
+        return readings;
+    }
+
+    private static long timestampOf(Map<String, Object> values) {
+        Object value = values.get("timestamp");
+        return value instanceof Number ? ((Number) value).longValue() : 0;
+    }
+
+    private static int compare(Entry a, Entry b) {
+        int byTimestamp = Long.compare(a.timestamp, b.timestamp);
+        return byTimestamp != 0 ? byTimestamp : a.key.compareTo(b.key);
+    }
+
+    private static Callback<Map<String, Object>> decoding(
+            Callback<Reading> callback, int fields) {
+        return new Callback<Map<String, Object>>() {
+            @Override
+            public void onSuccess(Map<String, Object> values) {
+                callback.onSuccess(ReadingDecoder.decode(values, fields));
+            }
+
+            @Override
+            public void onFailure(String error) {
+                callback.onFailure(error);
+            }
+        };
+    }
+
+    private <T> void query(Callback<T> callback, Query<T> query) {
+        respond(() -> {
+            if (!connected) {
+                callback.onFailure("Not connected");
+                return;
+            }
+            try {
+                callback.onSuccess(query.run());
+            } catch (Exception e) {
+                callback.onFailure(e.getMessage());
+            }
+        });
+    }
+
+    private void respond(Runnable response) {
+        scheduler.schedule(() -> dispatch(response), latencyMs, TimeUnit.MILLISECONDS);
+    }
+
+    private <T> void publish(Stream<T> stream, T value) {
+        long delayNanos = TimeUnit.MILLISECONDS.toNanos(latencyMs);
+        int rate = maxEventsPerSecond;
+        if (rate > 0) {
+            synchronized (this) {
+                long now = System.nanoTime();
+                long slot = Math.max(now + delayNanos, nextEventSlotNanos);
+                nextEventSlotNanos = slot + TimeUnit.SECONDS.toNanos(1) / rate;
+                delayNanos = slot - now;
+            }
+        }
+        scheduler.schedule(() -> dispatch(() -> stream.publish(value)), delayNanos, TimeUnit.NANOSECONDS);
+    }
+
+    private void dispatch(Runnable runnable) {
+        deliveredEvents.incrementAndGet();
+        if (callbackExecutor != null) {
+            callbackExecutor.execute(runnable);
+        } else {
+            runnable.run();
+        }
+    }
+
+    private interface Query<T> {
+        T run();
+    }
+
+    private static class Entry {
+        final String key;
+        final long timestamp;
+        final Map<String, Object> values;
+
+        Entry(String key, long timestamp, Map<String, Object> values) {
+            this.key = key;
+            this.timestamp = timestamp;
+            this.values = values;
+        }
+    }
+
+    // Value stream with Firebase value-listener semantics: new subscribers get the current value.
+    private static class Stream<T> {
+        final List<Callback<T>> subscribers = new CopyOnWriteArrayList<>();
+        volatile T value;
+
+        Subscription subscribe(Callback<T> subscriber) {
+            subscribers.add(subscriber);
+            T current = value;
+            if (current != null) {
+                subscriber.onSuccess(current);
+            }
+            return () -> subscribers.remove(subscriber);
+        }
+
+        void publish(T newValue) {
+            value = newValue;
+            for (Callback<T> subscriber : subscribers) {
+                subscriber.onSuccess(newValue);
+            }
+        }
+
+        boolean isAttached() {
+            return !subscribers.isEmpty();
+        }
+    }
+}
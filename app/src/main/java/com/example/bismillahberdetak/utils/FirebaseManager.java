@@ -4,46 +4,57 @@ import android.util.Log;
 
 import androidx.annotation.NonNull;
 
+import com.example.bismillahberdetak.models.HistoryPage;
 import com.example.bismillahberdetak.models.Reading;
+import com.google.firebase.database.ChildEventListener;
 import com.google.firebase.database.DataSnapshot;
 import com.google.firebase.database.DatabaseError;
 import com.google.firebase.database.DatabaseReference;
 import com.google.firebase.database.FirebaseDatabase;
+import com.google.firebase.database.Query;
+import com.google.firebase.database.ServerValue;
 import com.google.firebase.database.ValueEventListener;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
-public class FirebaseManager {
+public class FirebaseManager implements ReadingDataSource {
     private static final String TAG = "FirebaseManager";
-    private static final String USER_ID = "user001";
+    public static final String DEFAULT_USER_ID = "user001";
+    public static final int HISTORY_PAGE_SIZE = 20;
 
+    private final String userId;
     private DatabaseReference databaseReference;
     private DatabaseReference userRef;
 
-    private ValueEventListener statusListener;
     private ValueEventListener instantReadingListener;
     private ValueEventListener latestListener;
-    private ValueEventListener historyListener;
+    private ChildEventListener ppgFrameListener;
+    private Query ppgFrameQuery;
+    private final ListenerRegistry listenerRegistry = new ListenerRegistry();
+    // .info nodes describe the connection, not a user, so one listener serves every instance.
+    private static final ListenerRegistry connectionListeners = new ListenerRegistry();
 
-    public interface FirebaseCallback<T> {
-        void onSuccess(T data);
-        void onFailure(String error);
+    public FirebaseManager() {
+        this(DEFAULT_USER_ID);
     }
 
-    public FirebaseManager() {
+    public FirebaseManager(String userId) {
+        this.userId = userId;
         try {
             FirebaseDatabase database = FirebaseDatabase.getInstance();
             databaseReference = database.getReference();
-            userRef = databaseReference.child("users").child(USER_ID);
-            Log.d(TAG, "FirebaseManager initialized");
+            userRef = databaseReference.child("users").child(userId);
+            Log.d(TAG, "FirebaseManager initialized for " + userId);
         } catch (Exception e) {
             Log.e(TAG, "Failed to initialize Firebase: " + e.getMessage());
         }
     }
 
-    public void sendStartCommand(FirebaseCallback<Void> callback) {
+    public void sendStartCommand(Callback<Void> callback) {
         Log.d(TAG, "sendStartCommand() called");
 
         if (userRef == null) {
@@ -63,7 +74,7 @@ public class FirebaseManager {
                 });
     }
 
-    public void sendStopCommand(FirebaseCallback<Void> callback) {
+    public void sendStopCommand(Callback<Void> callback) {
         userRef.child("command").setValue("stop")
                 .addOnSuccessListener(aVoid -> {
                     Log.d(TAG, "STOP command sent");
@@ -75,8 +86,38 @@ public class FirebaseManager {
                 });
     }
 
-    public void listenToStatus(FirebaseCallback<String> callback) {
-        statusListener = new ValueEventListener() {
+    public String getUserId() {
+        return userId;
+    }
+
+    // Writes the command together with its id and a server timestamp in one update, so the
+    // device never sees a command without the id it has to acknowledge.
+    @Override
+    public void sendCommand(String command, String commandId, Callback<Void> callback) {
+        if (userRef == null) {
+            if (callback != null) callback.onFailure("Firebase not initialized");
+            return;
+        }
+
+        Map<String, Object> update = new HashMap<>();
+        update.put("command", command);
+        update.put("commandId", commandId);
+        update.put("commandTimestamp", ServerValue.TIMESTAMP);
+
+        userRef.updateChildren(update)
+                .addOnSuccessListener(aVoid -> {
+                    Log.d(TAG, "Command " + command + " (" + commandId + ") written");
+                    if (callback != null) callback.onSuccess(null);
+                })
+                .addOnFailureListener(e -> {
+                    Log.e(TAG, "Failed to send " + command + ": " + e.getMessage());
+                    if (callback != null) callback.onFailure(e.getMessage());
+                });
+    }
+
+    @Override
+    public Subscription listenToStatus(Callback<String> callback) {
+        ValueEventListener statusListener = new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
                 String status = snapshot.getValue(String.class);
@@ -93,10 +134,32 @@ public class FirebaseManager {
             }
         };
 
-        userRef.child("status").addValueEventListener(statusListener);
+        return listenerRegistry.subscribe("status", userRef.child("status"), statusListener);
     }
 
-    public void listenToInstantReading(FirebaseCallback<Reading> callback) {
+    @Override
+    public Subscription listenToAckId(Callback<String> callback) {
+        ValueEventListener ackListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                String ackId = snapshot.getValue(String.class);
+                if (ackId != null) {
+                    callback.onSuccess(ackId);
+                }
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "Ack listener cancelled: " + error.getMessage());
+                callback.onFailure(error.getMessage());
+            }
+        };
+
+        return listenerRegistry.subscribe("ackId", userRef.child("ackId"), ackListener);
+    }
+
+    @Override
+    public void listenToInstantReading(Callback<Reading> callback) {
         instantReadingListener = new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
@@ -106,10 +169,9 @@ public class FirebaseManager {
                         return;
                     }
 
-                    Reading reading = snapshot.getValue(Reading.class);
+                    Reading reading = ReadingDecoder.decode(snapshot, ReadingDecoder.FIELDS_LIVE);
 
                     if (reading != null) {
-                        Log.d(TAG, "Instant reading update: " + reading.toString());
                         callback.onSuccess(reading);
                     } else {
                         Log.d(TAG, "Reading data is null");
@@ -130,7 +192,8 @@ public class FirebaseManager {
         Log.d(TAG, "Started listening to instantReading");
     }
 
-    public void listenToLatestReading(FirebaseCallback<Reading> callback) {
+    @Override
+    public void listenToLatestReading(Callback<Reading> callback) {
         latestListener = new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
@@ -140,7 +203,7 @@ public class FirebaseManager {
                         return;
                     }
 
-                    Reading reading = snapshot.getValue(Reading.class);
+                    Reading reading = ReadingDecoder.decode(snapshot, ReadingDecoder.FIELDS_HISTORY);
                     if (reading != null && reading.getHeartRate() > 0) {
                         Log.d(TAG, "Latest reading: HR=" + reading.getHeartRate() + ", SpO2=" + reading.getSpo2());
                         callback.onSuccess(reading);
@@ -160,137 +223,248 @@ public class FirebaseManager {
         userRef.child("latest").addValueEventListener(latestListener);
     }
 
-    public void fetchHistory(FirebaseCallback<List<Reading>> callback) {
-        userRef.child("readings").addListenerForSingleValueEvent(new ValueEventListener() {
+    @Override
+    public void fetchHistoryPage(HistoryPage previousPage, Callback<HistoryPage> callback) {
+        Query query = userRef.child("readings").orderByChild("timestamp");
+        if (previousPage != null) {
+            query = query.endBefore(previousPage.getCursorTimestamp(), previousPage.getCursorKey());
+        }
+
+        query.limitToLast(HISTORY_PAGE_SIZE).addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
                 List<Reading> readings = new ArrayList<>();
+                long cursorTimestamp = 0;
+                String cursorKey = null;
+                int childCount = 0;
+
                 try {
                     for (DataSnapshot child : snapshot.getChildren()) {
-                        try {
-                            Reading reading = child.getValue(Reading.class);
-                            if (reading != null && reading.getHeartRate() > 0 && reading.getSpo2() > 0) {
-                                readings.add(reading);
-                            }
-                        } catch (Exception e) {
-                            Log.w(TAG, "Skipping invalid reading: " + e.getMessage());
+                        if (childCount++ == 0) {
+                            Long timestamp = child.child("timestamp").getValue(Long.class);
+                            cursorTimestamp = timestamp != null ? timestamp : 0;
+                            cursorKey = child.getKey();
+                        }
+
+                        Reading reading = parseHistoryChild(child);
+                        if (reading != null) {
+                            readings.add(reading);
                         }
                     }
 
-                    Collections.sort(readings, (r1, r2) -> Long.compare(r2.getTimestamp(), r1.getTimestamp()));
+                    Collections.reverse(readings);
 
-                    Log.d(TAG, "Fetched " + readings.size() + " readings");
-                    callback.onSuccess(readings);
+                    HistoryPage page = new HistoryPage(readings, cursorTimestamp, cursorKey,
+                            childCount == HISTORY_PAGE_SIZE);
+                    Log.d(TAG, "Fetched history page: " + page);
+                    callback.onSuccess(page);
                 } catch (Exception e) {
-                    Log.e(TAG, "Error fetching history: " + e.getMessage());
+                    Log.e(TAG, "Error fetching history page: " + e.getMessage());
                     callback.onFailure(e.getMessage());
                 }
             }
 
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "Failed to fetch history: " + error.getMessage());
+                Log.e(TAG, "Failed to fetch history page: " + error.getMessage());
                 callback.onFailure(error.getMessage());
             }
         });
     }
 
-    public void fetchLastReadings(int limit, FirebaseCallback<List<Reading>> callback) {
+    @Override
+    public void fetchReadingsSince(long timestamp, Callback<List<Reading>> callback) {
         userRef.child("readings")
                 .orderByChild("timestamp")
-                .limitToLast(limit)
+                .startAfter(timestamp)
                 .addListenerForSingleValueEvent(new ValueEventListener() {
                     @Override
                     public void onDataChange(@NonNull DataSnapshot snapshot) {
                         List<Reading> readings = new ArrayList<>();
                         try {
                             for (DataSnapshot child : snapshot.getChildren()) {
-                                Reading reading = child.getValue(Reading.class);
-                                if (reading != null && reading.getHeartRate() > 0 && reading.getSpo2() > 0) {
+                                Reading reading = parseHistoryChild(child);
+                                if (reading != null) {
                                     readings.add(reading);
                                 }
                             }
 
-                            Collections.sort(readings, (r1, r2) -> Long.compare(r1.getTimestamp(), r2.getTimestamp()));
-
-                            Log.d(TAG, "Fetched last " + readings.size() + " readings for chart");
+                            Log.d(TAG, "Fetched " + readings.size() + " readings since " + timestamp);
                             callback.onSuccess(readings);
                         } catch (Exception e) {
-                            Log.e(TAG, "Error fetching last readings: " + e.getMessage());
+                            Log.e(TAG, "Error fetching new readings: " + e.getMessage());
                             callback.onFailure(e.getMessage());
                         }
                     }
 
                     @Override
                     public void onCancelled(@NonNull DatabaseError error) {
-                        Log.e(TAG, "Failed to fetch last readings: " + error.getMessage());
+                        Log.e(TAG, "Failed to fetch new readings: " + error.getMessage());
                         callback.onFailure(error.getMessage());
                     }
                 });
     }
 
-    public void listenToHistory(FirebaseCallback<List<Reading>> callback) {
-        historyListener = new ValueEventListener() {
+    @Override
+    public void fetchRange(long startTimestamp, long endTimestamp, Callback<List<Reading>> callback) {
+        Query query = userRef.child("readings").orderByChild("timestamp");
+        if (startTimestamp != Long.MIN_VALUE) {
+            query = query.startAt(startTimestamp);
+        }
+        if (endTimestamp != Long.MAX_VALUE) {
+            query = query.endAt(endTimestamp);
+        }
+
+        query.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
             public void onDataChange(@NonNull DataSnapshot snapshot) {
                 List<Reading> readings = new ArrayList<>();
                 try {
                     for (DataSnapshot child : snapshot.getChildren()) {
-                        try {
-                            Reading reading = child.getValue(Reading.class);
-                            if (reading != null && reading.getHeartRate() > 0 && reading.getSpo2() > 0) {
-                                readings.add(reading);
-                            }
-                        } catch (Exception e) {
-                            Log.w(TAG, "Skipping invalid reading: " + e.getMessage());
+                        Reading reading = parseHistoryChild(child);
+                        if (reading != null) {
+                            readings.add(reading);
                         }
                     }
 
-                    Collections.sort(readings, (r1, r2) -> Long.compare(r2.getTimestamp(), r1.getTimestamp()));
-
-                    Log.d(TAG, "History updated: " + readings.size() + " readings");
+                    Log.d(TAG, "Fetched " + readings.size() + " readings in [" + startTimestamp + ", " + endTimestamp + "]");
                     callback.onSuccess(readings);
                 } catch (Exception e) {
-                    Log.e(TAG, "Error loading history: " + e.getMessage());
+                    Log.e(TAG, "Error fetching range: " + e.getMessage());
                     callback.onFailure(e.getMessage());
                 }
             }
 
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
-                Log.e(TAG, "History listener cancelled: " + error.getMessage());
+                Log.e(TAG, "Failed to fetch range: " + error.getMessage());
                 callback.onFailure(error.getMessage());
             }
-        };
+        });
+    }
 
-        userRef.child("readings").addValueEventListener(historyListener);
+    private Reading parseHistoryChild(DataSnapshot child) {
+        try {
+            Reading reading = ReadingDecoder.decode(child, ReadingDecoder.FIELDS_HISTORY);
+            if (reading != null && reading.getHeartRate() > 0 && reading.getSpo2() > 0) {
+                return reading;
+            }
+        } catch (Exception e) {
+            Log.w(TAG, "Skipping invalid reading: " + e.getMessage());
+        }
+        return null;
     }
 
-    public void getLastSeen(FirebaseCallback<Long> callback) {
-        userRef.child("lastSeen").addListenerForSingleValueEvent(new ValueEventListener() {
+    @Override
+    public void listenToPpgFrames(Callback<Map<?, ?>> callback) {
+        removePpgFrameListener();
+
+        ChildEventListener frameListener = new ChildEventListener() {
             @Override
-            public void onDataChange(@NonNull DataSnapshot snapshot) {
-                try {
-                    if (snapshot.exists()) {
-                        Long lastSeen = snapshot.getValue(Long.class);
-                        callback.onSuccess(lastSeen);
-                    } else {
-                        callback.onSuccess(null);
-                    }
-                } catch (Exception e) {
-                    Log.e(TAG, "Error getting lastSeen: " + e.getMessage());
-                    callback.onFailure(e.getMessage());
+            public void onChildAdded(@NonNull DataSnapshot snapshot, String previousChildName) {
+                Object value = snapshot.getValue();
+                if (value instanceof Map) {
+                    callback.onSuccess((Map<?, ?>) value);
                 }
             }
 
+            @Override
+            public void onChildChanged(@NonNull DataSnapshot snapshot, String previousChildName) {
+            }
+
+            @Override
+            public void onChildRemoved(@NonNull DataSnapshot snapshot) {
+            }
+
+            @Override
+            public void onChildMoved(@NonNull DataSnapshot snapshot, String previousChildName) {
+            }
+
             @Override
             public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "PPG frame listener cancelled: " + error.getMessage());
                 callback.onFailure(error.getMessage());
             }
+        };
+
+        ppgFrameListener = frameListener;
+
+        // Only frames pushed from now on; the device is expected to prune old ones. The newest
+        // existing key is read once and everything after it is streamed without a limit, so a
+        // burst of frames pushed together arrives in full rather than just its last frame.
+        DatabaseReference frames = userRef.child("ppgFrames");
+        frames.orderByKey().limitToLast(1).addListenerForSingleValueEvent(new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                if (ppgFrameListener != frameListener) return;
+
+                String lastKey = null;
+                for (DataSnapshot child : snapshot.getChildren()) {
+                    lastKey = child.getKey();
+                }
+                ppgFrameQuery = lastKey != null ? frames.orderByKey().startAfter(lastKey) : frames.orderByKey();
+                ppgFrameQuery.addChildEventListener(frameListener);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                if (ppgFrameListener != frameListener) return;
+                frameListener.onCancelled(error);
+            }
         });
     }
 
-    public void checkConnection(FirebaseCallback<Boolean> callback) {
+    @Override
+    public void removePpgFrameListener() {
+        if (ppgFrameListener != null) {
+            if (ppgFrameQuery != null) {
+                ppgFrameQuery.removeEventListener(ppgFrameListener);
+                ppgFrameQuery = null;
+            }
+            ppgFrameListener = null;
+        }
+    }
+
+    @Override
+    public Subscription listenToLastSeen(Callback<Long> callback) {
+        ValueEventListener lastSeenListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                callback.onSuccess(snapshot.exists() ? snapshot.getValue(Long.class) : null);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                Log.e(TAG, "lastSeen listener cancelled: " + error.getMessage());
+                callback.onFailure(error.getMessage());
+            }
+        };
+
+        return listenerRegistry.subscribe("lastSeen", userRef.child("lastSeen"), lastSeenListener);
+    }
+
+    // Milliseconds to add to the local clock to get Firebase server time.
+    @Override
+    public Subscription listenToServerTimeOffset(Callback<Long> callback) {
+        ValueEventListener offsetListener = new ValueEventListener() {
+            @Override
+            public void onDataChange(@NonNull DataSnapshot snapshot) {
+                Long offset = snapshot.getValue(Long.class);
+                callback.onSuccess(offset != null ? offset : 0L);
+            }
+
+            @Override
+            public void onCancelled(@NonNull DatabaseError error) {
+                callback.onFailure(error.getMessage());
+            }
+        };
+
+        DatabaseReference offsetRef = FirebaseDatabase.getInstance().getReference(".info/serverTimeOffset");
+        return connectionListeners.subscribe(".info/serverTimeOffset", offsetRef, offsetListener);
+    }
+
+    @Override
+    public void checkConnection(Callback<Boolean> callback) {
         DatabaseReference connectedRef = FirebaseDatabase.getInstance().getReference(".info/connected");
         connectedRef.addListenerForSingleValueEvent(new ValueEventListener() {
             @Override
@@ -308,12 +482,7 @@ public class FirebaseManager {
         });
     }
 
-    public void removeStatusListener() {
-        if (statusListener != null) {
-            userRef.child("status").removeEventListener(statusListener);
-        }
-    }
-
+    @Override
     public void removeInstantReadingListener() {
         if (instantReadingListener != null) {
             userRef.child("instantReading").removeEventListener(instantReadingListener);
@@ -322,23 +491,20 @@ public class FirebaseManager {
         }
     }
 
+    @Override
     public void removeLatestReadingListener() {
         if (latestListener != null) {
             userRef.child("latest").removeEventListener(latestListener);
+            latestListener = null;
         }
     }
 
-    public void removeHistoryListener() {
-        if (historyListener != null) {
-            userRef.child("readings").removeEventListener(historyListener);
-        }
-    }
-
-    public void removeAllListeners() {
-        removeStatusListener();
-        removeInstantReadingListener();
-        removeLatestReadingListener();
-        removeHistoryListener();
-        Log.d(TAG, "All listeners removed");
+    @Override
+    public int getActiveListenerCount() {
+        int count = listenerRegistry.getAttachedCount();
+        if (instantReadingListener != null) count++;
+        if (latestListener != null) count++;
+        if (ppgFrameListener != null) count++;
+        return count;
     }
 }
\ No newline at end of file
@@ -0,0 +1,85 @@
+package com.example.bismillahberdetak.utils;
+
+import java.util.Arrays;
+
+// Fixed-bucket latency histogram in milliseconds. The last bucket collects everything
+// above the largest bound.
+public class LatencyHistogram {
+
+    private static final long[] BUCKET_BOUNDS_MS = {50, 100, 200, 500, 1000, 2000, 5000, 10000};
+
+    private final long[] counts = new long[BUCKET_BOUNDS_MS.length + 1];
+    private long total;
+    private long sum;
+    private long min = Long.MAX_VALUE;
+    private long max;
+
+    public void record(long latencyMs) {
+        int bucket = 0;
+        while (bucket < BUCKET_BOUNDS_MS.length && latencyMs > BUCKET_BOUNDS_MS[bucket]) {
+            bucket++;
+        }
+        counts[bucket]++;
+        total++;
+        sum += latencyMs;
+        min = Math.min(min, latencyMs);
+        max = Math.max(max, latencyMs);
+    }
+
+    public long getCount() {
+        return total;
+    }
+
+    public long getMin() {
+        return total == 0 ? 0 : min;
+    }
+
+    public long getMax() {
+        return max;
+    }
+
+    public long getMean() {
+        return total == 0 ? 0 : sum / total;
+    }
+
+    // Upper bound of the bucket holding the given percentile (0-100), capped at the observed max.
+    public long getPercentile(double percentile) {
+        if (total == 0) return 0;
+
+        long rank = (long) Math.ceil(total * percentile / 100.0);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_BOUNDS_MS.length; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                return Math.min(BUCKET_BOUNDS_MS[i], max);
+            }
+        }
+        return max;
+    }
+
+    public void reset() {
+        Arrays.fill(counts, 0);
+        total = 0;
+        sum = 0;
+        min = Long.MAX_VALUE;
+        max = 0;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("n=").append(total)
+                .append(", min=").append(getMin())
+                .append(", mean=").append(getMean())
+                .append(", p50<=").append(getPercentile(50))
+                .append(", p95<=").append(getPercentile(95))
+                .append(", max=").append(max)
+                .append(" [");
+        for (int i = 0; i < counts.length; i++) {
+            if (i > 0) builder.append(", ");
+            builder.append(i < BUCKET_BOUNDS_MS.length ? "<=" + BUCKET_BOUNDS_MS[i] : ">" + BUCKET_BOUNDS_MS[i - 1])
+                    .append(':').append(counts[i]);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -0,0 +1,103 @@
+package com.example.bismillahberdetak.utils;
+
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.NonNull;
+
+import com.google.firebase.database.DataSnapshot;
+import com.google.firebase.database.DatabaseError;
+import com.google.firebase.database.DatabaseReference;
+import com.google.firebase.database.ValueEventListener;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+@MainThread
+public class ListenerRegistry {
+
+    private static final String TAG = "ListenerRegistry";
+
+    private final Map<String, SharedListener> listeners = new HashMap<>();
+
+    public Subscription subscribe(String path, DatabaseReference reference, ValueEventListener subscriber) {
+        SharedListener shared = listeners.get(path);
+        if (shared == null) {
+            shared = new SharedListener(path, reference);
+            listeners.put(path, shared);
+            reference.addValueEventListener(shared);
+            Log.d(TAG, "Attached listener on " + path);
+        }
+
+        shared.subscribers.add(subscriber);
+        if (shared.lastSnapshot != null) {
+            subscriber.onDataChange(shared.lastSnapshot);
+        }
+
+        SharedListener owner = shared;
+        return new Subscription() {
+            private boolean closed = false;
+
+            @Override
+            public void close() {
+                if (closed) return;
+                closed = true;
+                owner.subscribers.remove(subscriber);
+                if (owner.subscribers.isEmpty()) {
+                    detach(owner);
+                }
+            }
+        };
+    }
+
+    public int getSubscriberCount(String path) {
+        SharedListener shared = listeners.get(path);
+        return shared == null ? 0 : shared.subscribers.size();
+    }
+
+    // Distinct paths with a listener attached to the database.
+    public int getAttachedCount() {
+        return listeners.size();
+    }
+
+    private void detach(SharedListener shared) {
+        if (listeners.get(shared.path) == shared) {
+            listeners.remove(shared.path);
+            shared.reference.removeEventListener(shared);
+            Log.d(TAG, "Detached listener on " + shared.path);
+        }
+    }
+
+    private class SharedListener implements ValueEventListener {
+        final String path;
+        final DatabaseReference reference;
+        final List<ValueEventListener> subscribers = new ArrayList<>();
+        DataSnapshot lastSnapshot;
+
+        SharedListener(String path, DatabaseReference reference) {
+            this.path = path;
+            this.reference = reference;
+        }
+
+        @Override
+        public void onDataChange(@NonNull DataSnapshot snapshot) {
+            lastSnapshot = snapshot;
+            for (ValueEventListener subscriber : new ArrayList<>(subscribers)) {
+                subscriber.onDataChange(snapshot);
+            }
+        }
+
+        @Override
+        public void onCancelled(@NonNull DatabaseError error) {
+            // Firebase drops a cancelled listener, so forget it and let the next subscribe re-attach.
+            List<ValueEventListener> cancelled = new ArrayList<>(subscribers);
+            subscribers.clear();
+            detach(this);
+            for (ValueEventListener subscriber : cancelled) {
+                subscriber.onCancelled(error);
+            }
+        }
+    }
+}
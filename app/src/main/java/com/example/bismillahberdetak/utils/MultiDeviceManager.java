@@ -0,0 +1,228 @@
+package com.example.bismillahberdetak.utils;
+
+import android.util.Log;
+
+import androidx.annotation.MainThread;
+
+import com.example.bismillahberdetak.models.DeviceSummary;
+import com.example.bismillahberdetak.models.Reading;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+// Watches several ESP32 units (one Firebase user node each) from one install. Every device
+// keeps a status and a liveness listener; the server time offset they all need is a single
+// listener FirebaseManager shares per connection. The instantReading stream, the expensive one,
+// is attached for at most maxLiveStreams devices and each stream is conflated on its own, so
+// one chatty device cannot crowd out the others. Everything lands in one DeviceDashboard.
+@MainThread
+public class MultiDeviceManager {
+
+    private static final String TAG = "MultiDeviceManager";
+
+    public static final long LIVE_STREAM_INTERVAL_MS = 250;
+    private static final long DEVICE_TIMEOUT_MS = 6000;
+
+    public interface DataSourceFactory {
+        ReadingDataSource create(String deviceId);
+    }
+
+    private final int maxDevices;
+    private final int maxLiveStreams;
+    private final DataSourceFactory dataSourceFactory;
+    private final DeviceDashboard dashboard = new DeviceDashboard();
+    private final Map<String, DeviceHandle> devices = new LinkedHashMap<>();
+    // Insertion order doubles as least-recently-started order for eviction.
+    private final Set<String> liveDevices = new LinkedHashSet<>();
+
+    public MultiDeviceManager(int maxDevices, int maxLiveStreams) {
+        this(maxDevices, maxLiveStreams, FirebaseManager::new);
+    }
+
+    public MultiDeviceManager(int maxDevices, int maxLiveStreams, DataSourceFactory dataSourceFactory) {
+        this.maxDevices = maxDevices;
+        this.maxLiveStreams = maxLiveStreams;
+        this.dataSourceFactory = dataSourceFactory;
+    }
+
+    public DeviceDashboard getDashboard() {
+        return dashboard;
+    }
+
+    public boolean addDevice(String deviceId) {
+        if (devices.containsKey(deviceId)) return true;
+        if (devices.size() >= maxDevices) {
+            Log.w(TAG, "Device limit " + maxDevices + " reached, not adding " + deviceId);
+            return false;
+        }
+
+        DeviceHandle handle = new DeviceHandle(deviceId, dataSourceFactory.create(deviceId));
+        devices.put(deviceId, handle);
+        dashboard.addDevice(deviceId);
+        handle.attach();
+        Log.d(TAG, "Watching " + deviceId + " (" + devices.size() + "/" + maxDevices + ")");
+        return true;
+    }
+
+    public void removeDevice(String deviceId) {
+        DeviceHandle handle = devices.remove(deviceId);
+        if (handle == null) return;
+
+        liveDevices.remove(deviceId);
+        handle.detach();
+        dashboard.removeDevice(deviceId);
+    }
+
+    public boolean startLiveStream(String deviceId) {
+        DeviceHandle handle = devices.get(deviceId);
+        if (handle == null || maxLiveStreams <= 0) return false;
+
+        if (liveDevices.remove(deviceId)) {
+            liveDevices.add(deviceId);
+            return true;
+        }
+
+        if (liveDevices.size() >= maxLiveStreams) {
+            Iterator<String> oldest = liveDevices.iterator();
+            String evicted = oldest.next();
+            oldest.remove();
+            devices.get(evicted).stopLiveStream();
+            Log.d(TAG, "Live stream limit reached, stopped " + evicted);
+        }
+
+        liveDevices.add(deviceId);
+        handle.startLiveStream();
+        return true;
+    }
+
+    public void stopLiveStream(String deviceId) {
+        DeviceHandle handle = devices.get(deviceId);
+        if (handle != null && liveDevices.remove(deviceId)) {
+            handle.stopLiveStream();
+        }
+    }
+
+    public CommandChannel getCommandChannel(String deviceId) {
+        DeviceHandle handle = devices.get(deviceId);
+        return handle != null ? handle.getCommandChannel() : null;
+    }
+
+    // Database listeners the devices' data sources hold open, each shared path counted once.
+    public int getActiveListenerCount() {
+        int count = 0;
+        for (DeviceHandle handle : devices.values()) {
+            count += handle.dataSource.getActiveListenerCount();
+        }
+        return count;
+    }
+
+    public long getDroppedUpdates(String deviceId) {
+        DeviceHandle handle = devices.get(deviceId);
+        return handle != null ? handle.instantDispatcher.getDroppedCount() : 0;
+    }
+
+    public void release() {
+        for (String deviceId : new ArrayList<>(devices.keySet())) {
+            removeDevice(deviceId);
+        }
+        dashboard.release();
+    }
+
+    private class DeviceHandle {
+        final String deviceId;
+        final ReadingDataSource dataSource;
+        final ConflatingDispatcher<Reading> instantDispatcher;
+        final DeviceLivenessMonitor livenessMonitor;
+        Subscription statusSubscription;
+        CommandChannel commandChannel;
+        boolean live = false;
+
+        DeviceHandle(String deviceId, ReadingDataSource dataSource) {
+            this.deviceId = deviceId;
+            this.dataSource = dataSource;
+            this.instantDispatcher = new ConflatingDispatcher<>(LIVE_STREAM_INTERVAL_MS, this::showReading);
+            this.livenessMonitor = new DeviceLivenessMonitor(dataSource, DEVICE_TIMEOUT_MS,
+                    (alive, lastSeenAgeMs) -> dashboard.updateLiveness(deviceId, alive));
+        }
+
+        void attach() {
+            statusSubscription = dataSource.listenToStatus(new ReadingDataSource.Callback<String>() {
+                @Override
+                public void onSuccess(String status) {
+                    dashboard.updateStatus(deviceId, status);
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    Log.e(TAG, deviceId + " status listener error: " + error);
+                    statusSubscription = null;
+                }
+            });
+            livenessMonitor.start();
+        }
+
+        void startLiveStream() {
+            if (live) return;
+            live = true;
+            dashboard.updateLive(deviceId, true);
+
+            dataSource.listenToInstantReading(new ReadingDataSource.Callback<Reading>() {
+                @Override
+                public void onSuccess(Reading reading) {
+                    instantDispatcher.offer(reading);
+                }
+
+                @Override
+                public void onFailure(String error) {
+                    Log.e(TAG, deviceId + " instant stream error: " + error);
+                    liveDevices.remove(deviceId);
+                    stopLiveStream();
+                }
+            });
+        }
+
+        void showReading(Reading reading) {
+            DeviceSummary summary = dashboard.get(deviceId);
+            if (summary == null) return;
+
+            Boolean hasValid = reading.getHasValidReading();
+            if (hasValid != null && hasValid) {
+                dashboard.updateReading(deviceId, reading.getInstantHR(), reading.getInstantSPO2(), reading.getProgress());
+            } else {
+                dashboard.updateReading(deviceId, summary.getHeartRate(), summary.getSpo2(), reading.getProgress());
+            }
+        }
+
+        void stopLiveStream() {
+            if (!live) return;
+            live = false;
+            dataSource.removeInstantReadingListener();
+            instantDispatcher.cancel();
+            instantDispatcher.logMetrics(deviceId + " live stream");
+            dashboard.updateLive(deviceId, false);
+        }
+
+        CommandChannel getCommandChannel() {
+            if (commandChannel == null) {
+                commandChannel = new CommandChannel(dataSource);
+            }
+            return commandChannel;
+        }
+
+        void detach() {
+            stopLiveStream();
+            if (statusSubscription != null) {
+                statusSubscription.close();
+                statusSubscription = null;
+            }
+            if (commandChannel != null) {
+                commandChannel.close();
+            }
+            livenessMonitor.stop();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.bismillahberdetak.utils;
+
+import com.example.bismillahberdetak.models.HistoryPage;
+import com.example.bismillahberdetak.models.Reading;
+
+import java.util.List;
+import java.util.Map;
+
+// Everything the app reads from or writes to the device backend. FirebaseManager is the real
+// implementation; FakeReadingDataSource runs in-process for load tests and benchmarks.
+public interface ReadingDataSource {
+
+    interface Callback<T> {
+        void onSuccess(T data);
+        void onFailure(String error);
+    }
+
+    void sendCommand(String command, String commandId, Callback<Void> callback);
+
+    Subscription listenToStatus(Callback<String> callback);
+
+    // The commandId the device copies into ackId once it has acted on a command.
+    Subscription listenToAckId(Callback<String> callback);
+
+    void listenToInstantReading(Callback<Reading> callback);
+
+    void removeInstantReadingListener();
+
+    void listenToLatestReading(Callback<Reading> callback);
+
+    void removeLatestReadingListener();
+
+    // Raw frame maps in the PpgFrameCodec layout, one callback per frame in arrival order.
+    void listenToPpgFrames(Callback<Map<?, ?>> callback);
+
+    void removePpgFrameListener();
+
+    Subscription listenToLastSeen(Callback<Long> callback);
+
+    Subscription listenToServerTimeOffset(Callback<Long> callback);
+
+    void checkConnection(Callback<Boolean> callback);
+
+    // Newest-first page of history strictly older than previousPage's cursor (or the newest page).
+    void fetchHistoryPage(HistoryPage previousPage, Callback<HistoryPage> callback);
+
+    void fetchReadingsSince(long timestamp, Callback<List<Reading>> callback);
+
+    // Inclusive bounds; Long.MIN_VALUE / Long.MAX_VALUE leave that side open.
+    void fetchRange(long startTimestamp, long endTimestamp, Callback<List<Reading>> callback);
+
+    // Listeners this source holds open on the backend. Connection-wide ones that every source
+    // shares (e.g. the server time offset) are not counted.
+    int getActiveListenerCount();
+}
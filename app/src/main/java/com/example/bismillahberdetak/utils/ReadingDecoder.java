@@ -0,0 +1,135 @@
+package com.example.bismillahberdetak.utils;
+
+import com.example.bismillahberdetak.models.Reading;
+import com.google.firebase.database.DataSnapshot;
+
+import java.util.Map;
+
+// Decodes reading nodes straight from the snapshot's value map instead of going through
+// getValue(Reading.class), which resolves every bean property by reflection.
+public final class ReadingDecoder {
+
+    public static final int FIELDS_SUMMARY = 1;        // heartRate, spo2, timestamp
+    public static final int FIELDS_DETAILS = 1 << 1;   // measurementTime, samples, duration, method, algorithm, reference
+    public static final int FIELDS_INSTANT = 1 << 2;   // hasValidReading, instant and running averages, validReadings
+    public static final int FIELDS_PROGRESS = 1 << 3;  // secondsPassed, totalSeconds, progress, status
+
+    public static final int FIELDS_HISTORY = FIELDS_SUMMARY | FIELDS_DETAILS;
+    public static final int FIELDS_LIVE = FIELDS_INSTANT | FIELDS_PROGRESS;
+    public static final int FIELDS_ALL = FIELDS_HISTORY | FIELDS_LIVE;
+
+    private ReadingDecoder() {
+    }
+
+    public static Reading decode(DataSnapshot snapshot, int fields) {
+        Object value = snapshot.getValue();
+        if (!(value instanceof Map)) {
+            return null;
+        }
+        return decode((Map<?, ?>) value, fields);
+    }
+
+    public static Reading decode(Map<?, ?> values, int fields) {
+        Reading reading = new Reading();
+        boolean summary = (fields & FIELDS_SUMMARY) != 0;
+        boolean details = (fields & FIELDS_DETAILS) != 0;
+        boolean instant = (fields & FIELDS_INSTANT) != 0;
+        boolean progress = (fields & FIELDS_PROGRESS) != 0;
+
+        for (Map.Entry<?, ?> entry : values.entrySet()) {
+            Object value = entry.getValue();
+            if (value == null || !(entry.getKey() instanceof String)) continue;
+
+            switch ((String) entry.getKey()) {
+                case "heartRate":
+                    if (summary) reading.setHeartRate(toInt(value));
+                    break;
+                case "spo2":
+                    if (summary) reading.setSpo2(toInt(value));
+                    break;
+                case "timestamp":
+                    if (summary) reading.setTimestamp(toLong(value));
+                    break;
+                case "measurementTime":
+                    if (details) reading.setMeasurementTime(toInt(value));
+                    break;
+                case "samples":
+                    if (details) reading.setSamples(toInt(value));
+                    break;
+                case "duration":
+                    if (details) reading.setDuration(toInt(value));
+                    break;
+                case "method":
+                    if (details) reading.setMethod(value.toString());
+                    break;
+                case "algorithm":
+                    if (details) reading.setAlgorithm(value.toString());
+                    break;
+                case "reference":
+                    if (details) reading.setReference(value.toString());
+                    break;
+                case "hasValidReading":
+                    if (instant) reading.setHasValidReading(toBoolean(value));
+                    break;
+                case "instantHR":
+                    if (instant) reading.setInstantHR(toInt(value));
+                    break;
+                case "instantSPO2":
+                    if (instant) reading.setInstantSPO2(toInt(value));
+                    break;
+                case "currentAvgHR":
+                    if (instant) reading.setCurrentAvgHR(toInt(value));
+                    break;
+                case "currentAvgSPO2":
+                    if (instant) reading.setCurrentAvgSPO2(toInt(value));
+                    break;
+                case "validReadings":
+                    if (instant) reading.setValidReadings(toInt(value));
+                    break;
+                case "secondsPassed":
+                    if (progress) reading.setSecondsPassed(toInt(value));
+                    break;
+                case "totalSeconds":
+                    if (progress) reading.setTotalSeconds(toInt(value));
+                    break;
+                case "progress":
+                    if (progress) reading.setProgress(toInt(value));
+                    break;
+                case "status":
+                    if (progress) reading.setStatus(value.toString());
+                    break;
+                default:
+                    break;
+            }
+        }
+        return reading;
+    }
+
+    private static int toInt(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).intValue();
+        }
+        return (int) toLong(value);
+    }
+
+    private static long toLong(Object value) {
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        try {
+            return (long) Double.parseDouble(value.toString());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static Boolean toBoolean(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value;
+        }
+        if (value instanceof Number) {
+            return ((Number) value).intValue() != 0;
+        }
+        return Boolean.parseBoolean(value.toString());
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.bismillahberdetak.utils;
+
+import java.io.Closeable;
+
+// Handle to one listener registration, returned by ReadingDataSource. Closing it stops only
+// that caller's callbacks; it is safe to close more than once.
+public interface Subscription extends Closeable {
+    @Override
+    void close();
+}
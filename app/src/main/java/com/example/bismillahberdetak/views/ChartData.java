@@ -0,0 +1,100 @@
+package com.example.bismillahberdetak.views;
+
+import com.example.bismillahberdetak.models.ReadingStore;
+
+import java.util.Arrays;
+
+// Append-only copy of the chart columns, with range min/max indexes for y-axis autoscaling.
+// A reader that captured the arrays and size (the downsampling thread) keeps a consistent
+// prefix: appends only write past it, and growing copies into new arrays.
+final class ChartData {
+
+    long[] timestamps;
+    int[] heartRates;
+    int[] spo2s;
+    int size;
+    MinMaxSegmentTree heartRateRange;
+    MinMaxSegmentTree spo2Range;
+
+    private ChartData(long[] timestamps, int[] heartRates, int[] spo2s, int size) {
+        this.timestamps = timestamps;
+        this.heartRates = heartRates;
+        this.spo2s = spo2s;
+        this.size = size;
+        buildRanges();
+    }
+
+    static ChartData from(ReadingStore readings) {
+        int size = readings.size();
+        long[] timestamps = new long[size];
+        int[] heartRates = new int[size];
+        int[] spo2s = new int[size];
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = readings.getTimestamp(i);
+            heartRates[i] = readings.getHeartRate(i);
+            spo2s[i] = readings.getSpo2(i);
+        }
+        return new ChartData(timestamps, heartRates, spo2s, size);
+    }
+
+    // timestamp must be newer than getEndTime().
+    void append(long timestamp, int heartRate, int spo2) {
+        if (size == timestamps.length) {
+            int capacity = Math.max(16, size * 2);
+            timestamps = Arrays.copyOf(timestamps, capacity);
+            heartRates = Arrays.copyOf(heartRates, capacity);
+            spo2s = Arrays.copyOf(spo2s, capacity);
+        }
+        timestamps[size] = timestamp;
+        heartRates[size] = heartRate;
+        spo2s[size] = spo2;
+        size++;
+
+        if (!heartRateRange.set(size - 1, heartRate) || !spo2Range.set(size - 1, spo2)) {
+            buildRanges();
+        }
+    }
+
+    private void buildRanges() {
+        heartRateRange = new MinMaxSegmentTree(heartRates, size, timestamps.length);
+        spo2Range = new MinMaxSegmentTree(spo2s, size, timestamps.length);
+    }
+
+    long getStartTime() {
+        return size == 0 ? 0 : timestamps[0];
+    }
+
+    long getEndTime() {
+        return size == 0 ? 0 : timestamps[size - 1];
+    }
+
+    // First index whose timestamp is >= time (size if none).
+    int lowerBound(double time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    // First index whose timestamp is > time (size if none).
+    int upperBound(double time) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (timestamps[mid] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
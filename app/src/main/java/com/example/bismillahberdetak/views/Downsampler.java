@@ -0,0 +1,64 @@
+package com.example.bismillahberdetak.views;
+
+// Largest-Triangle-Three-Buckets: picks threshold points that keep the visual shape of the
+// series (peaks and dips survive, flat stretches collapse). x must be ascending.
+final class Downsampler {
+
+    private Downsampler() {
+    }
+
+    // Indices of the kept points in ascending order, always including the first and last.
+    static int[] lttb(long[] x, int[] y, int size, int threshold) {
+        if (threshold >= size || threshold < 3) {
+            return allIndices(size);
+        }
+
+        int[] kept = new int[threshold];
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        long origin = x[0];
+
+        int a = 0;
+        kept[0] = 0;
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            // Average of the next bucket is the third corner of the triangle.
+            int nextStart = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            int nextEnd = Math.min((int) Math.floor((bucket + 2) * bucketSize) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            for (int j = nextStart; j < nextEnd; j++) {
+                avgX += x[j] - origin;
+                avgY += y[j];
+            }
+            int nextCount = nextEnd - nextStart;
+            avgX /= nextCount;
+            avgY /= nextCount;
+
+            int start = (int) Math.floor(bucket * bucketSize) + 1;
+            int end = (int) Math.floor((bucket + 1) * bucketSize) + 1;
+            double ax = x[a] - origin;
+            double ay = y[a];
+            double maxArea = -1;
+            int chosen = start;
+            for (int j = start; j < end; j++) {
+                double area = Math.abs((ax - avgX) * (y[j] - ay) - (ax - (x[j] - origin)) * (avgY - ay));
+                if (area > maxArea) {
+                    maxArea = area;
+                    chosen = j;
+                }
+            }
+
+            kept[bucket + 1] = chosen;
+            a = chosen;
+        }
+        kept[threshold - 1] = size - 1;
+        return kept;
+    }
+
+    static int[] allIndices(int size) {
+        int[] indices = new int[size];
+        for (int i = 0; i < size; i++) {
+            indices[i] = i;
+        }
+        return indices;
+    }
+}
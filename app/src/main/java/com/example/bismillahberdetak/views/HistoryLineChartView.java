@@ -2,11 +2,17 @@ package com.example.bismillahberdetak.views;
 
 import android.content.Context;
 import android.content.res.Configuration;
+import android.graphics.Bitmap;
 import android.graphics.Canvas;
-import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Path;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
 import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.View;
 
 import androidx.annotation.Nullable;
@@ -14,33 +20,139 @@ import androidx.core.content.ContextCompat;
 
 import com.example.bismillahberdetak.R;
 import com.example.bismillahberdetak.models.Reading;
+import com.example.bismillahberdetak.models.ReadingStore;
 
 import java.text.SimpleDateFormat;
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Labels, colors and geometry are computed in setReadings/onSizeChanged; onDraw only replays
+// them, so drawing a frame does not allocate.
+//
+// Any number of readings can be set. Series longer than the plot is wide are reduced with
+// LTTB on a background thread, so drawing cost follows the width rather than the history
+// length. Results are cached per target width until new readings are set. Appended points
+// extend the cached series as they are, and a series is only resampled once it holds more
+// than RESAMPLE_SLACK past its target.
+//
+// Pinch zooms and drag pans over time; double tap resets. The y axes follow the visible
+// window through the min/max segment trees in ChartData, so a gesture frame costs
+// O(log n) plus the visible points.
+//
+// Background, horizontal grid, y-axis labels, axis titles and legend are rendered once into
+// a cached bitmap and redrawn only when the size, theme or y ranges change. A frame is that
+// bitmap plus the time ticks and the data lines. The bitmap is allocated with the size, never
+// while drawing.
+//
+// appendReading() adds a newer reading without reloading: the series, range trees and kept
+// points are extended in place and the new segment grows in over a short animation.
 public class HistoryLineChartView extends View {
 
+    private static final ExecutorService DOWNSAMPLE_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    private static final int GRID_ROWS = 5;
+    private static final int TIME_TICKS = 5;
+    private static final float PIXELS_PER_POINT = 2f;
+    private static final int MAX_MARKERS = 30;
+    private static final double MIN_VISIBLE_SPAN_S = 600;
+    private static final long APPEND_ANIMATION_MS = 400;
+    private static final float RESAMPLE_SLACK = 0.25f;
+
+    // Axis ranges when nothing is visible; autoscaled ranges snap to these units.
+    private static final int HR_MIN = 40;
+    private static final int HR_MAX = 120;
+    private static final int HR_UNIT = 2;
+    private static final int HR_MIN_RANGE = 20;
+    private static final int SPO2_MIN = 85;
+    private static final int SPO2_MAX = 100;
+    private static final int SPO2_UNIT = 1;
+    private static final int SPO2_MIN_RANGE = 5;
+
     private Paint hrLinePaint;
     private Paint spo2LinePaint;
+    private Paint hrLegendLinePaint;
+    private Paint spo2LegendLinePaint;
     private Paint gridPaint;
-    private Paint textPaint;
     private Paint backgroundPaint;
-    private Paint axisPaint;
+
+    private Paint hrAxisTextPaint;
+    private Paint spo2AxisTextPaint;
+    private Paint timeTextPaint;
+    private Paint dateTextPaint;
+    private Paint hrTitlePaint;
+    private Paint spo2TitlePaint;
+    private Paint hrLegendTextPaint;
+    private Paint spo2LegendTextPaint;
+    private Paint emptyTitlePaint;
+    private Paint emptySubtitlePaint;
 
     private Path hrPath;
     private Path spo2Path;
 
-    private List<Reading> readings;
-    private static final int MAX_READINGS = 10; // Show last 10 measurements
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private ChartData data;
+    private int dataGeneration = 0;
+    private final Map<Integer, Downsampled> downsampleCache = new HashMap<>();
+    private int pendingTarget = -1;
+    // May still belong to the previous readings while their replacement is downsampled.
+    private Downsampled displayed;
 
     private float padding = 60f;
     private float bottomPadding = 80f;
 
     private boolean isDarkMode = false;
 
+    private Bitmap staticLayer;
+    private final Canvas staticLayerCanvas = new Canvas();
+    private boolean staticLayerDirty = true;
+
+    private SimpleDateFormat timeFormat;
+    private SimpleDateFormat dateFormat;
+    private final Date labelDate = new Date();
+
+    private final String[] hrAxisLabels = new String[GRID_ROWS + 1];
+    private final String[] spo2AxisLabels = new String[GRID_ROWS + 1];
+    private final int[] hrAxis = {HR_MIN, HR_MAX};
+    private final int[] spo2Axis = {SPO2_MIN, SPO2_MAX};
+
+    // Visible time range in epoch seconds.
+    private double viewStart;
+    private double viewEnd;
+    private ScaleGestureDetector scaleDetector;
+    private GestureDetector gestureDetector;
+
+    // Geometry for the displayed series and size.
+    private boolean hasLayout = false;
+    private final float[] rowLines = new float[(GRID_ROWS + 1) * 4];
+    private final float[] tickLines = new float[TIME_TICKS * 4];
+    private int tickLineCount = 0;
+    private float[] axisLabelY = new float[GRID_ROWS + 1];
+    private int hrPointCount = 0;
+    private int spo2PointCount = 0;
+    private float[] hrX = new float[0];
+    private float[] hrY = new float[0];
+    private float[] spo2X = new float[0];
+    private float[] spo2Y = new float[0];
+    private boolean drawMarkers = false;
+
+    // Data index of the appended point whose segment is still animating in, or -1. While it
+    // animates the point is laid out but left off the end of its path.
+    private int animatedIndex = -1;
+    private long animationStart;
+    private boolean hrTailPending = false;
+    private boolean spo2TailPending = false;
+    private int tickCount = 0;
+    private final long[] tickTimes = new long[TIME_TICKS];
+    private final float[] tickX = new float[TIME_TICKS];
+    private final String[] timeLabels = new String[TIME_TICKS];
+    private final String[] dateLabels = new String[TIME_TICKS];
+
     public HistoryLineChartView(Context context) {
         super(context);
         init(context);
@@ -57,245 +169,750 @@ public class HistoryLineChartView extends View {
     }
 
     private void init(Context context) {
-        readings = new ArrayList<>();
-
-        int nightMode = context.getResources().getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK;
-        isDarkMode = (nightMode == Configuration.UI_MODE_NIGHT_YES);
+        data = ChartData.from(new ReadingStore());
 
-        hrLinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        hrLinePaint.setColor(ContextCompat.getColor(context, R.color.chart_hr_line));
-        hrLinePaint.setStyle(Paint.Style.STROKE);
-        hrLinePaint.setStrokeWidth(5f);
-        hrLinePaint.setStrokeCap(Paint.Cap.ROUND);
-        hrLinePaint.setStrokeJoin(Paint.Join.ROUND);
-
-        spo2LinePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        spo2LinePaint.setColor(ContextCompat.getColor(context, R.color.chart_spo2_line));
-        spo2LinePaint.setStyle(Paint.Style.STROKE);
-        spo2LinePaint.setStrokeWidth(5f);
-        spo2LinePaint.setStrokeCap(Paint.Cap.ROUND);
-        spo2LinePaint.setStrokeJoin(Paint.Join.ROUND);
+        hrLinePaint = createLinePaint(5f);
+        spo2LinePaint = createLinePaint(5f);
+        hrLegendLinePaint = createLinePaint(8f);
+        spo2LegendLinePaint = createLinePaint(8f);
 
         gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        gridPaint.setColor(ContextCompat.getColor(context, R.color.chart_grid));
         gridPaint.setStyle(Paint.Style.STROKE);
         gridPaint.setStrokeWidth(1f);
-        gridPaint.setAlpha(100);
-
-        textPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        textPaint.setColor(ContextCompat.getColor(context, R.color.text_secondary));
-        textPaint.setTextSize(28f);
-        textPaint.setTextAlign(Paint.Align.CENTER);
-
-        axisPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
-        axisPaint.setColor(ContextCompat.getColor(context, R.color.text_primary));
-        axisPaint.setStyle(Paint.Style.STROKE);
-        axisPaint.setStrokeWidth(2f);
 
         backgroundPaint = new Paint();
-        backgroundPaint.setColor(ContextCompat.getColor(context, R.color.card_background));
         backgroundPaint.setStyle(Paint.Style.FILL);
 
+        hrAxisTextPaint = createTextPaint(24f, Paint.Align.RIGHT);
+        spo2AxisTextPaint = createTextPaint(24f, Paint.Align.LEFT);
+        timeTextPaint = createTextPaint(22f, Paint.Align.CENTER);
+        dateTextPaint = createTextPaint(18f, Paint.Align.CENTER);
+        hrTitlePaint = createTextPaint(26f, Paint.Align.CENTER);
+        spo2TitlePaint = createTextPaint(26f, Paint.Align.CENTER);
+        hrLegendTextPaint = createTextPaint(28f, Paint.Align.LEFT);
+        spo2LegendTextPaint = createTextPaint(28f, Paint.Align.LEFT);
+        emptyTitlePaint = createTextPaint(40f, Paint.Align.CENTER);
+        emptySubtitlePaint = createTextPaint(28f, Paint.Align.CENTER);
+
+        applyTheme(context);
+
+        timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+        dateFormat = new SimpleDateFormat("MMM dd", Locale.getDefault());
+
+        buildAxisLabels();
+
         hrPath = new Path();
         spo2Path = new Path();
+
+        scaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScaleBegin(ScaleGestureDetector detector) {
+                getParent().requestDisallowInterceptTouchEvent(true);
+                return displayed != null;
+            }
+
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                zoom(detector.getScaleFactor(), detector.getFocusX());
+                return true;
+            }
+        });
+        gestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return displayed != null;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                if (!isZoomed()) return false;
+                pan(distanceX);
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                if (!isZoomed()) return false;
+                resetViewport();
+                onViewportChanged();
+                return true;
+            }
+        });
+    }
+
+    private void applyTheme(Context context) {
+        int nightMode = context.getResources().getConfiguration().uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        isDarkMode = (nightMode == Configuration.UI_MODE_NIGHT_YES);
+
+        int hrColor = ContextCompat.getColor(context, R.color.chart_hr_line);
+        int spo2Color = ContextCompat.getColor(context, R.color.chart_spo2_line);
+        int secondaryColor = ContextCompat.getColor(context, R.color.text_secondary);
+
+        hrLinePaint.setColor(hrColor);
+        spo2LinePaint.setColor(spo2Color);
+        hrLegendLinePaint.setColor(hrColor);
+        spo2LegendLinePaint.setColor(spo2Color);
+        gridPaint.setColor(ContextCompat.getColor(context, R.color.chart_grid));
+        gridPaint.setAlpha(100);
+        backgroundPaint.setColor(ContextCompat.getColor(context, R.color.card_background));
+
+        hrAxisTextPaint.setColor(secondaryColor);
+        spo2AxisTextPaint.setColor(secondaryColor);
+        timeTextPaint.setColor(secondaryColor);
+        dateTextPaint.setColor(secondaryColor);
+        hrTitlePaint.setColor(hrColor);
+        spo2TitlePaint.setColor(spo2Color);
+        hrLegendTextPaint.setColor(hrColor);
+        spo2LegendTextPaint.setColor(spo2Color);
+        emptyTitlePaint.setColor(secondaryColor);
+        emptySubtitlePaint.setColor(secondaryColor);
+
+        staticLayerDirty = true;
+    }
+
+    private static Paint createLinePaint(float strokeWidth) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setStyle(Paint.Style.STROKE);
+        paint.setStrokeWidth(strokeWidth);
+        paint.setStrokeCap(Paint.Cap.ROUND);
+        paint.setStrokeJoin(Paint.Join.ROUND);
+        return paint;
+    }
+
+    private static Paint createTextPaint(float textSize, Paint.Align align) {
+        Paint paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        paint.setTextSize(textSize);
+        paint.setTextAlign(align);
+        return paint;
     }
 
     public void setReadings(List<Reading> readings) {
-        this.readings = readings;
+        setReadings(ReadingStore.of(readings));
+    }
+
+    public void setReadings(ReadingStore readings) {
+        data = ChartData.from(readings);
+        animatedIndex = -1;
+        invalidateDownsamples();
+        requestDownsample();
         invalidate();
     }
 
+    // Adds a reading newer than everything shown. Older or repeated readings are ignored;
+    // they arrive through setReadings.
+    public void appendReading(Reading reading) {
+        long timestamp = reading.getTimestamp();
+        if (data.size > 0 && timestamp <= data.getEndTime()) return;
+
+        boolean wasShowing = displayed != null && displayed.data == data;
+        boolean wasZoomed = wasShowing && isZoomed();
+        boolean followsLatest = wasShowing && viewEnd >= data.getEndTime();
+        double span = viewEnd - viewStart;
+
+        data.append(timestamp, reading.getHeartRate(), reading.getSpo2());
+
+        if (!wasShowing) {
+            // Still waiting for the first layout of this data; a pending result is extended
+            // with this reading when it arrives.
+            requestDownsample();
+            return;
+        }
+
+        int index = data.size - 1;
+        Downsampled extended = displayed.withAppended(index);
+        // The shown entry stays cached in its extended form; the others catch up when used.
+        Downsampled shown = displayed;
+        downsampleCache.replaceAll((target, cached) -> cached == shown ? extended : cached);
+        displayed = extended;
+        if (!wasZoomed) {
+            resetViewport();
+        } else if (followsLatest) {
+            viewEnd = data.getEndTime();
+            viewStart = viewEnd - span;
+        }
+
+        if (viewEnd >= data.getEndTime()) {
+            animatedIndex = index;
+            animationStart = SystemClock.uptimeMillis();
+        }
+        onViewportChanged();
+    }
+
+    private void invalidateDownsamples() {
+        dataGeneration++;
+        downsampleCache.clear();
+        pendingTarget = -1;
+    }
+
     @Override
-    protected void onDraw(Canvas canvas) {
-        super.onDraw(canvas);
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        releaseStaticLayer();
+        createStaticLayer(w, h);
+        layoutChart(w, h);
+        requestDownsample();
+    }
 
-        int width = getWidth();
-        int height = getHeight();
+    // One point per PIXELS_PER_POINT across the plot, doubled for each zoom level so zooming in
+    // reveals detail. Levels keep the number of distinct cache entries small.
+    private int getTargetPoints() {
+        float chartWidth = getWidth() - 2 * padding;
+        int target = Math.max(3, (int) (chartWidth / PIXELS_PER_POINT));
+        if (displayed == null || !isZoomed()) return target;
 
-        canvas.drawRect(0, 0, width, height, backgroundPaint);
+        double zoom = getFullSpan() / (viewEnd - viewStart);
+        int level = (int) Math.ceil(Math.log(zoom) / Math.log(2));
+        return (int) Math.min((long) target << Math.min(level, 20), Integer.MAX_VALUE);
+    }
 
-        if (readings == null || readings.isEmpty()) {
-            drawEmptyState(canvas, width, height);
+    private void requestDownsample() {
+        if (getWidth() <= 0) return;
+
+        int target = getTargetPoints();
+        if (data.size <= target) {
+            if (displayed == null || displayed.data != data || displayed.hrIndices.length != data.size) {
+                int[] all = Downsampler.allIndices(data.size);
+                show(new Downsampled(data, all, all, data.size));
+            }
             return;
         }
 
-        drawGrid(canvas, width, height);
+        Downsampled cached = downsampleCache.get(target);
+        if (cached != null) {
+            cached = cached.extendedTo(data.size);
+            downsampleCache.put(target, cached);
+            if (cached != displayed) show(cached);
+            // Keeps showing the extended series while a tighter one is computed.
+            if (cached.hrIndices.length <= target * (1 + RESAMPLE_SLACK)) return;
+        }
+        if (pendingTarget == target) return;
+        pendingTarget = target;
+
+        // The worker gets the arrays and size as of now; later appends only write past them.
+        ChartData snapshot = data;
+        long[] timestamps = data.timestamps;
+        int[] heartRates = data.heartRates;
+        int[] spo2s = data.spo2s;
+        int size = data.size;
+        int generation = dataGeneration;
+        DOWNSAMPLE_EXECUTOR.execute(() -> {
+            int[] hrIndices = Downsampler.lttb(timestamps, heartRates, size, target);
+            int[] spo2Indices = Downsampler.lttb(timestamps, spo2s, size, target);
+            Downsampled sampled = new Downsampled(snapshot, hrIndices, spo2Indices, size);
+
+            mainHandler.post(() -> {
+                if (generation != dataGeneration) return;
+                Downsampled result = sampled.extendedTo(data.size);
+                downsampleCache.put(target, result);
+                if (pendingTarget == target) pendingTarget = -1;
+                if (getTargetPoints() == target) show(result);
+            });
+        });
+    }
+
+    private void show(Downsampled series) {
+        boolean newData = displayed == null || displayed.data != series.data;
+        displayed = series;
+        if (newData) {
+            resetViewport();
+        }
+        layoutChart(getWidth(), getHeight());
+        invalidate();
+    }
 
-        drawAxes(canvas, width, height);
+    private double getFullSpan() {
+        return displayed.data.getEndTime() - displayed.data.getStartTime();
+    }
 
-        drawLegend(canvas, width);
+    private boolean isZoomed() {
+        return displayed != null && viewEnd - viewStart < getFullSpan();
+    }
 
-        drawLines(canvas, width, height);
+    private void resetViewport() {
+        viewStart = displayed.data.getStartTime();
+        viewEnd = displayed.data.getEndTime();
     }
 
-    private void drawEmptyState(Canvas canvas, int width, int height) {
-        textPaint.setTextSize(40f);
-        textPaint.setTextAlign(Paint.Align.CENTER);
-        canvas.drawText("No measurements yet", width / 2f, height / 2f - 20, textPaint);
+    private void zoom(float scaleFactor, float focusX) {
+        double fullSpan = getFullSpan();
+        double span = viewEnd - viewStart;
+        if (fullSpan <= 0 || span <= 0) return;
+
+        double minSpan = Math.min(MIN_VISIBLE_SPAN_S, fullSpan);
+        double newSpan = Math.max(minSpan, Math.min(fullSpan, span / scaleFactor));
+        double focusTime = xToTime(focusX);
+        viewStart = focusTime - (focusTime - viewStart) * newSpan / span;
+        viewEnd = viewStart + newSpan;
+        clampViewport();
+        onViewportChanged();
+    }
 
-        textPaint.setTextSize(28f);
-        canvas.drawText("Start measuring to see your history", width / 2f, height / 2f + 30, textPaint);
+    private void pan(float distanceX) {
+        float chartWidth = getWidth() - 2 * padding;
+        double shift = distanceX / chartWidth * (viewEnd - viewStart);
+        viewStart += shift;
+        viewEnd += shift;
+        clampViewport();
+        onViewportChanged();
     }
 
-    private void drawGrid(Canvas canvas, int width, int height) {
+    private void clampViewport() {
+        double span = viewEnd - viewStart;
+        double start = displayed.data.getStartTime();
+        double end = displayed.data.getEndTime();
+        if (viewStart < start) {
+            viewStart = start;
+            viewEnd = start + span;
+        }
+        if (viewEnd > end) {
+            viewEnd = end;
+            viewStart = Math.max(start, end - span);
+        }
+    }
+
+    private void onViewportChanged() {
+        layoutChart(getWidth(), getHeight());
+        requestDownsample();
+        invalidate();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (event.getActionMasked() == MotionEvent.ACTION_DOWN && isZoomed()) {
+            getParent().requestDisallowInterceptTouchEvent(true);
+        }
+        boolean handled = scaleDetector.onTouchEvent(event);
+        handled |= gestureDetector.onTouchEvent(event);
+        return handled || super.onTouchEvent(event);
+    }
+
+    private void layoutChart(int width, int height) {
+        hasLayout = width > 0 && height > 0 && displayed != null;
+        if (!hasLayout) return;
+
         float chartHeight = height - padding - bottomPadding;
         float chartWidth = width - 2 * padding;
+        ChartData shown = displayed.data;
+
+        autoscale(shown);
+        layoutTicks(shown);
+
+        int g = 0;
+        for (int i = 0; i <= GRID_ROWS; i++) {
+            float y = padding + (chartHeight * i / GRID_ROWS);
+            rowLines[g++] = padding;
+            rowLines[g++] = y;
+            rowLines[g++] = width - padding;
+            rowLines[g++] = y;
+            axisLabelY[i] = height - bottomPadding - (chartHeight * i / GRID_ROWS) + 8;
+        }
 
-        for (int i = 0; i <= 5; i++) {
-            float y = padding + (chartHeight * i / 5f);
-            canvas.drawLine(padding, y, width - padding, y, gridPaint);
+        tickLineCount = tickCount > 1 ? tickCount : 0;
+        g = 0;
+        for (int i = 0; i < tickCount; i++) {
+            tickX[i] = timeToX(tickTimes[i], chartWidth);
+            if (tickLineCount > 0) {
+                tickLines[g++] = tickX[i];
+                tickLines[g++] = padding;
+                tickLines[g++] = tickX[i];
+                tickLines[g++] = height - bottomPadding;
+            }
         }
 
-        int lineCount = Math.min(readings.size(), MAX_READINGS);
-        if (lineCount > 1) {
-            for (int i = 0; i < lineCount; i++) {
-                float x = padding + (chartWidth * i / (lineCount - 1));
-                canvas.drawLine(x, padding, x, height - bottomPadding, gridPaint);
+        int[] hrIndices = displayed.hrIndices;
+        int[] spo2Indices = displayed.spo2Indices;
+        if (hrX.length < hrIndices.length) {
+            hrX = new float[hrIndices.length];
+            hrY = new float[hrIndices.length];
+        }
+        if (spo2X.length < spo2Indices.length) {
+            spo2X = new float[spo2Indices.length];
+            spo2Y = new float[spo2Indices.length];
+        }
+
+        float bottom = height - bottomPadding;
+        hrPointCount = layoutSeries(shown, hrIndices, shown.heartRates, hrAxis, hrX, hrY, hrPath,
+                chartWidth, chartHeight, bottom);
+        hrTailPending = hasAnimatedTail(hrIndices, hrPointCount);
+        spo2PointCount = layoutSeries(shown, spo2Indices, shown.spo2s, spo2Axis, spo2X, spo2Y, spo2Path,
+                chartWidth, chartHeight, bottom);
+        spo2TailPending = hasAnimatedTail(spo2Indices, spo2PointCount);
+        drawMarkers = hrPointCount <= MAX_MARKERS;
+    }
+
+    // Lays out the kept points inside the viewport plus one on each side, so lines run to the
+    // plot edges. An animating appended point is laid out but not added to the path. Returns
+    // the number of points written.
+    private int layoutSeries(ChartData shown, int[] indices, int[] values, int[] axis, float[] xs, float[] ys,
+                             Path path, float chartWidth, float chartHeight, float bottom) {
+        int from = Math.max(0, keptLowerBound(shown, indices, viewStart) - 1);
+        int to = Math.min(indices.length, keptUpperBound(shown, indices, viewEnd) + 1);
+
+        path.rewind();
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            int index = indices[i];
+            xs[count] = timeToX(shown.timestamps[index], chartWidth);
+            float normalized = (float) (values[index] - axis[0]) / (axis[1] - axis[0]);
+            ys[count] = bottom - (chartHeight * normalized);
+            if (count == 0) {
+                path.moveTo(xs[count], ys[count]);
+            } else if (index != animatedIndex) {
+                path.lineTo(xs[count], ys[count]);
             }
+            count++;
         }
+        return count;
     }
 
-    private void drawAxes(Canvas canvas, int width, int height) {
-        float chartHeight = height - padding - bottomPadding;
+    // True when the animating point is the last one laid out for this series.
+    private boolean hasAnimatedTail(int[] indices, int pointCount) {
+        return animatedIndex >= 0 && pointCount >= 2 && indices[indices.length - 1] == animatedIndex
+                && keptUpperBound(displayed.data, indices, viewEnd) >= indices.length - 1;
+    }
 
-        textPaint.setTextSize(24f);
-        textPaint.setTextAlign(Paint.Align.RIGHT);
-        int hrMin = 40;
-        int hrMax = 120;
-        for (int i = 0; i <= 5; i++) {
-            int value = hrMin + (hrMax - hrMin) * i / 5;
-            float y = height - bottomPadding - (chartHeight * i / 5f);
-            canvas.drawText(String.valueOf(value), padding - 10, y + 8, textPaint);
+    private static int keptLowerBound(ChartData shown, int[] indices, double time) {
+        int low = 0;
+        int high = indices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (shown.timestamps[indices[mid]] < time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
+        return low;
+    }
 
-        textPaint.setTextAlign(Paint.Align.LEFT);
-        int spo2Min = 85;
-        int spo2Max = 100;
-        for (int i = 0; i <= 5; i++) {
-            int value = spo2Min + (spo2Max - spo2Min) * i / 5;
-            float y = height - bottomPadding - (chartHeight * i / 5f);
-            canvas.drawText(value + "%", width - padding + 10, y + 8, textPaint);
+    private static int keptUpperBound(ChartData shown, int[] indices, double time) {
+        int low = 0;
+        int high = indices.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (shown.timestamps[indices[mid]] <= time) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
         }
+        return low;
+    }
 
-        textPaint.setTextAlign(Paint.Align.CENTER);
-        textPaint.setTextSize(22f);
-        int displayCount = Math.min(readings.size(), MAX_READINGS);
-        float chartWidth = width - 2 * padding;
+    // Fits both axes to the readings inside the viewport. Labels are only rebuilt when a
+    // bound actually moves.
+    private void autoscale(ChartData shown) {
+        int from = shown.lowerBound(viewStart);
+        int to = shown.upperBound(viewEnd);
+        if (from >= to) return;
+
+        boolean changed = fitAxis(shown.heartRateRange.min(from, to), shown.heartRateRange.max(from, to),
+                HR_UNIT, HR_MIN_RANGE, 0, Integer.MAX_VALUE, hrAxis);
+        changed |= fitAxis(shown.spo2Range.min(from, to), shown.spo2Range.max(from, to),
+                SPO2_UNIT, SPO2_MIN_RANGE, 0, 100, spo2Axis);
+        if (changed) {
+            buildAxisLabels();
+        }
+    }
 
-        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+    // Pads [low, high] by a tenth, snaps it to unit, widens it to at least minRange and to a
+    // multiple of GRID_ROWS units so every grid label is a whole number, then keeps it inside
+    // [floor, ceiling]. Returns true when axis changed.
+    private boolean fitAxis(int low, int high, int unit, int minRange, int floor, int ceiling, int[] axis) {
+        int pad = Math.max(unit, (high - low) / 10);
+        int lower = Math.floorDiv(low - pad, unit) * unit;
+        int upper = -Math.floorDiv(-(high + pad), unit) * unit;
+
+        int step = GRID_ROWS * unit;
+        int range = Math.max(minRange, upper - lower);
+        range = -Math.floorDiv(-range, step) * step;
+        int extra = range - (upper - lower);
+        lower -= Math.floorDiv(extra, 2 * unit) * unit;
+        upper = lower + range;
+
+        if (upper > ceiling) {
+            upper = ceiling;
+            lower = upper - range;
+        }
+        if (lower < floor) {
+            lower = floor;
+            upper = lower + range;
+        }
 
-        for (int i = 0; i < displayCount; i++) {
-            Reading reading = readings.get(i);
-            float x = padding + (chartWidth * i / (displayCount - 1));
-            String timeStr = timeFormat.format(new Date(reading.getTimestamp() * 1000));
+        if (axis[0] == lower && axis[1] == upper) return false;
+        axis[0] = lower;
+        axis[1] = upper;
+        return true;
+    }
 
-            canvas.drawText(timeStr, x, height - bottomPadding + 30, textPaint);
+    private void buildAxisLabels() {
+        for (int i = 0; i <= GRID_ROWS; i++) {
+            hrAxisLabels[i] = String.valueOf(hrAxis[0] + (hrAxis[1] - hrAxis[0]) * i / GRID_ROWS);
+            spo2AxisLabels[i] = (spo2Axis[0] + (spo2Axis[1] - spo2Axis[0]) * i / GRID_ROWS) + "%";
+        }
+        staticLayerDirty = true;
+    }
 
-            if (i == 0 || i == displayCount - 1) {
-                SimpleDateFormat dateFormat = new SimpleDateFormat("MMM dd", Locale.getDefault());
-                String dateStr = dateFormat.format(reading.getDate());
-                textPaint.setTextSize(18f);
-                canvas.drawText(dateStr, x, height - bottomPadding + 55, textPaint);
-                textPaint.setTextSize(22f);
-            }
+    // Evenly spaced over the viewport; text is reformatted only for ticks whose time moved.
+    private void layoutTicks(ChartData shown) {
+        int count = viewEnd > viewStart ? TIME_TICKS : Math.min(shown.size, 1);
+        boolean resized = count != tickCount;
+        tickCount = count;
+
+        for (int i = 0; i < tickCount; i++) {
+            long time = tickCount > 1
+                    ? Math.round(viewStart + (viewEnd - viewStart) * i / (tickCount - 1))
+                    : Math.round(viewStart);
+            if (!resized && tickTimes[i] == time && timeLabels[i] != null) continue;
+
+            tickTimes[i] = time;
+            labelDate.setTime(time * 1000);
+            timeLabels[i] = timeFormat.format(labelDate);
+            dateLabels[i] = dateFormat.format(labelDate);
         }
+    }
 
-        textPaint.setTextSize(26f);
-        textPaint.setTextAlign(Paint.Align.CENTER);
+    private float timeToX(double timestamp, float chartWidth) {
+        double span = viewEnd - viewStart;
+        if (span <= 0) return padding + chartWidth / 2f;
+        return padding + chartWidth * (float) ((timestamp - viewStart) / span);
+    }
 
-        canvas.save();
-        canvas.rotate(-90, 20, height / 2f);
-        textPaint.setColor(ContextCompat.getColor(getContext(), R.color.chart_hr_line));
-        canvas.drawText("HR (bpm)", 20, height / 2f, textPaint);
-        canvas.restore();
+    private double xToTime(float x) {
+        float chartWidth = getWidth() - 2 * padding;
+        return viewStart + (x - padding) / chartWidth * (viewEnd - viewStart);
+    }
 
-        canvas.save();
-        canvas.rotate(90, width - 20, height / 2f);
-        textPaint.setColor(ContextCompat.getColor(getContext(), R.color.chart_spo2_line));
-        canvas.drawText("SpO2 (%)", width - 20, height / 2f, textPaint);
-        canvas.restore();
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+
+        int width = getWidth();
+        int height = getHeight();
 
-        textPaint.setColor(ContextCompat.getColor(getContext(), R.color.text_secondary));
+        if (data.size == 0 || !hasLayout) {
+            canvas.drawRect(0, 0, width, height, backgroundPaint);
+            if (data.size == 0) {
+                drawEmptyState(canvas, width, height);
+            }
+            return;
+        }
+
+        drawStaticLayer(canvas, width, height);
+
+        drawTicks(canvas, height);
+
+        drawLines(canvas);
     }
 
-    private void drawLegend(Canvas canvas, int width) {
-        float legendY = 30f;
-        float startX = width / 2f - 100;
+    @Override
+    protected void onConfigurationChanged(Configuration newConfig) {
+        super.onConfigurationChanged(newConfig);
+        int nightMode = newConfig.uiMode & Configuration.UI_MODE_NIGHT_MASK;
+        if ((nightMode == Configuration.UI_MODE_NIGHT_YES) != isDarkMode) {
+            applyTheme(getContext());
+            invalidate();
+        }
+    }
 
-        textPaint.setTextSize(28f);
-        textPaint.setTextAlign(Paint.Align.LEFT);
+    private void drawStaticLayer(Canvas canvas, int width, int height) {
+        if (staticLayer == null) {
+            // Only before the first size change; drawn directly rather than allocating here.
+            drawStaticContent(canvas, width, height);
+            return;
+        }
+        if (staticLayerDirty) {
+            drawStaticContent(staticLayerCanvas, width, height);
+            staticLayerDirty = false;
+        }
+        canvas.drawBitmap(staticLayer, 0, 0, null);
+    }
 
-        hrLinePaint.setStrokeWidth(8f);
-        canvas.drawLine(startX, legendY, startX + 40, legendY, hrLinePaint);
-        textPaint.setColor(ContextCompat.getColor(getContext(), R.color.chart_hr_line));
-        canvas.drawText("HR", startX + 50, legendY + 8, textPaint);
+    private void drawStaticContent(Canvas canvas, int width, int height) {
+        canvas.drawRect(0, 0, width, height, backgroundPaint);
+        drawGrid(canvas);
+        drawAxes(canvas, width, height);
+        drawLegend(canvas, width);
+    }
 
-        spo2LinePaint.setStrokeWidth(8f);
-        canvas.drawLine(startX + 120, legendY, startX + 160, legendY, spo2LinePaint);
-        textPaint.setColor(ContextCompat.getColor(getContext(), R.color.chart_spo2_line));
-        canvas.drawText("SpO2", startX + 170, legendY + 8, textPaint);
+    private void createStaticLayer(int width, int height) {
+        if (width <= 0 || height <= 0) return;
 
-        hrLinePaint.setStrokeWidth(5f);
-        spo2LinePaint.setStrokeWidth(5f);
-        textPaint.setColor(ContextCompat.getColor(getContext(), R.color.text_secondary));
+        staticLayer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+        staticLayerCanvas.setBitmap(staticLayer);
+        staticLayerDirty = true;
     }
 
-    private void drawLines(Canvas canvas, int width, int height) {
-        if (readings.size() < 2) return;
+    private void releaseStaticLayer() {
+        if (staticLayer != null) {
+            staticLayerCanvas.setBitmap(null);
+            staticLayer.recycle();
+            staticLayer = null;
+        }
+        staticLayerDirty = true;
+    }
 
-        float chartHeight = height - padding - bottomPadding;
-        float chartWidth = width - 2 * padding;
+    private void drawEmptyState(Canvas canvas, int width, int height) {
+        canvas.drawText("No measurements yet", width / 2f, height / 2f - 20, emptyTitlePaint);
+        canvas.drawText("Start measuring to see your history", width / 2f, height / 2f + 30, emptySubtitlePaint);
+    }
 
-        int displayCount = Math.min(readings.size(), MAX_READINGS);
+    private void drawGrid(Canvas canvas) {
+        canvas.drawLines(rowLines, 0, rowLines.length, gridPaint);
+    }
 
-        int hrMin = 40;
-        int hrMax = 120;
-        int spo2Min = 85;
-        int spo2Max = 100;
+    // Time ticks move with every pan, so they are drawn per frame rather than cached.
+    private void drawTicks(Canvas canvas, int height) {
+        if (tickLineCount > 0) {
+            canvas.drawLines(tickLines, 0, tickLineCount * 4, gridPaint);
+        }
+        for (int i = 0; i < tickCount; i++) {
+            canvas.drawText(timeLabels[i], tickX[i], height - bottomPadding + 30, timeTextPaint);
+            canvas.drawText(dateLabels[i], tickX[i], height - bottomPadding + 55, dateTextPaint);
+        }
+    }
 
-        hrPath.reset();
-        spo2Path.reset();
+    private void drawAxes(Canvas canvas, int width, int height) {
+        for (int i = 0; i <= GRID_ROWS; i++) {
+            canvas.drawText(hrAxisLabels[i], padding - 10, axisLabelY[i], hrAxisTextPaint);
+            canvas.drawText(spo2AxisLabels[i], width - padding + 10, axisLabelY[i], spo2AxisTextPaint);
+        }
 
-        boolean hrFirstPoint = true;
-        boolean spo2FirstPoint = true;
+        canvas.save();
+        canvas.rotate(-90, 20, height / 2f);
+        canvas.drawText("HR (bpm)", 20, height / 2f, hrTitlePaint);
+        canvas.restore();
 
-        for (int i = 0; i < displayCount; i++) {
-            Reading reading = readings.get(i);
+        canvas.save();
+        canvas.rotate(90, width - 20, height / 2f);
+        canvas.drawText("SpO2 (%)", width - 20, height / 2f, spo2TitlePaint);
+        canvas.restore();
+    }
 
-            float x = padding + (chartWidth * i / (displayCount - 1));
+    private void drawLegend(Canvas canvas, int width) {
+        float legendY = 30f;
+        float startX = width / 2f - 100;
 
-            int hr = reading.getHeartRate();
-            float hrNormalized = (float)(hr - hrMin) / (hrMax - hrMin);
-            float hrY = height - bottomPadding - (chartHeight * hrNormalized);
+        canvas.drawLine(startX, legendY, startX + 40, legendY, hrLegendLinePaint);
+        canvas.drawText("HR", startX + 50, legendY + 8, hrLegendTextPaint);
 
-            if (hrFirstPoint) {
-                hrPath.moveTo(x, hrY);
-                hrFirstPoint = false;
-            } else {
-                hrPath.lineTo(x, hrY);
-            }
+        canvas.drawLine(startX + 120, legendY, startX + 160, legendY, spo2LegendLinePaint);
+        canvas.drawText("SpO2", startX + 170, legendY + 8, spo2LegendTextPaint);
+    }
 
-            int spo2 = reading.getSpo2();
-            float spo2Normalized = (float)(spo2 - spo2Min) / (spo2Max - spo2Min);
-            float spo2Y = height - bottomPadding - (chartHeight * spo2Normalized);
+    private void drawLines(Canvas canvas) {
+        if (hrPointCount < 2) return;
 
-            if (spo2FirstPoint) {
-                spo2Path.moveTo(x, spo2Y);
-                spo2FirstPoint = false;
-            } else {
-                spo2Path.lineTo(x, spo2Y);
+        float progress = 1f;
+        if (animatedIndex >= 0) {
+            progress = Math.min(1f, (SystemClock.uptimeMillis() - animationStart) / (float) APPEND_ANIMATION_MS);
+            if (progress >= 1f) {
+                finishAppendAnimation();
             }
+        }
 
-            canvas.drawCircle(x, hrY, 8f, hrLinePaint);
-            canvas.drawCircle(x, spo2Y, 8f, spo2LinePaint);
+        canvas.save();
+        canvas.clipRect(padding, padding - 10, getWidth() - padding, getHeight() - bottomPadding + 10);
+        if (drawMarkers) {
+            int hrMarkers = hrTailPending ? hrPointCount - 1 : hrPointCount;
+            for (int i = 0; i < hrMarkers; i++) {
+                canvas.drawCircle(hrX[i], hrY[i], 8f, hrLinePaint);
+            }
+            int spo2Markers = spo2TailPending ? spo2PointCount - 1 : spo2PointCount;
+            for (int i = 0; i < spo2Markers; i++) {
+                canvas.drawCircle(spo2X[i], spo2Y[i], 8f, spo2LinePaint);
+            }
         }
 
         canvas.drawPath(hrPath, hrLinePaint);
         canvas.drawPath(spo2Path, spo2LinePaint);
+        if (hrTailPending) {
+            drawTail(canvas, hrX, hrY, hrPointCount, progress, hrLinePaint);
+        }
+        if (spo2TailPending) {
+            drawTail(canvas, spo2X, spo2Y, spo2PointCount, progress, spo2LinePaint);
+        }
+        canvas.restore();
+
+        if (animatedIndex >= 0) {
+            postInvalidateOnAnimation();
+        }
+    }
+
+    // The last segment grows from the previous point toward the appended one.
+    private void drawTail(Canvas canvas, float[] xs, float[] ys, int count, float progress, Paint paint) {
+        float fromX = xs[count - 2];
+        float fromY = ys[count - 2];
+        float toX = fromX + (xs[count - 1] - fromX) * progress;
+        float toY = fromY + (ys[count - 1] - fromY) * progress;
+        canvas.drawLine(fromX, fromY, toX, toY, paint);
+        if (drawMarkers) {
+            canvas.drawCircle(toX, toY, 8f * progress, paint);
+        }
+    }
+
+    // Closes the held-back segments onto the cached paths instead of laying them out again.
+    private void finishAppendAnimation() {
+        if (hrTailPending) {
+            hrPath.lineTo(hrX[hrPointCount - 1], hrY[hrPointCount - 1]);
+        }
+        if (spo2TailPending) {
+            spo2Path.lineTo(spo2X[spo2PointCount - 1], spo2Y[spo2PointCount - 1]);
+        }
+        hrTailPending = false;
+        spo2TailPending = false;
+        animatedIndex = -1;
+    }
+
+    // Detaching releases the layer; a reattach at the same size gets no onSizeChanged.
+    @Override
+    protected void onAttachedToWindow() {
+        super.onAttachedToWindow();
+        if (staticLayer == null) {
+            createStaticLayer(getWidth(), getHeight());
+        }
     }
 
     @Override
     protected void onDetachedFromWindow() {
         super.onDetachedFromWindow();
+        releaseStaticLayer();
+    }
+
+    private static final class Downsampled {
+        final ChartData data;
+        final int[] hrIndices;
+        final int[] spo2Indices;
+        // Points of data this series was chosen from; later ones are not in it yet.
+        final int size;
+
+        Downsampled(ChartData data, int[] hrIndices, int[] spo2Indices, int size) {
+            this.data = data;
+            this.hrIndices = hrIndices;
+            this.spo2Indices = spo2Indices;
+            this.size = size;
+        }
+
+        // Keeps every point already chosen and adds the new last one.
+        Downsampled withAppended(int index) {
+            return extendedTo(index + 1);
+        }
+
+        // Keeps every point already chosen and adds every point from size up to newSize.
+        Downsampled extendedTo(int newSize) {
+            if (newSize <= size) return this;
+
+            int[] hr = appendRange(hrIndices, size, newSize);
+            int[] spo2 = spo2Indices == hrIndices ? hr : appendRange(spo2Indices, size, newSize);
+            return new Downsampled(data, hr, spo2, newSize);
+        }
+
+        private static int[] appendRange(int[] indices, int from, int to) {
+            int[] extended = Arrays.copyOf(indices, indices.length + to - from);
+            for (int i = from; i < to; i++) {
+                extended[indices.length + i - from] = i;
+            }
+            return extended;
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,203 @@
+package com.example.bismillahberdetak.views;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.util.AttributeSet;
+import android.view.View;
+
+import androidx.annotation.MainThread;
+import androidx.annotation.Nullable;
+import androidx.core.content.ContextCompat;
+
+import com.example.bismillahberdetak.R;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Scrolling trend of the live measurement. Each series keeps its values in a fixed-size float
+// ring and is drawn through one reused Path, so pushing a value and drawing a frame never
+// allocate. Pushes only mark the view dirty; however fast values arrive it redraws at most
+// once per display frame.
+public class LiveTrendView extends View {
+
+    public static final int SERIES_HEART_RATE = 0;
+    public static final int SERIES_SPO2 = 1;
+
+    private static final int DEFAULT_CAPACITY = 120;
+    private static final int GRID_LINES = 4;
+
+    private final List<Series> series = new ArrayList<>();
+    private int capacity = DEFAULT_CAPACITY;
+
+    private Paint gridPaint;
+    private Paint backgroundPaint;
+
+    private float padding = 16f;
+    private boolean framePending = false;
+
+    public LiveTrendView(Context context) {
+        super(context);
+        init(context);
+    }
+
+    public LiveTrendView(Context context, @Nullable AttributeSet attrs) {
+        super(context, attrs);
+        init(context);
+    }
+
+    public LiveTrendView(Context context, @Nullable AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+        init(context);
+    }
+
+    private void init(Context context) {
+        gridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        gridPaint.setColor(ContextCompat.getColor(context, R.color.chart_grid));
+        gridPaint.setStyle(Paint.Style.STROKE);
+        gridPaint.setStrokeWidth(1f);
+        gridPaint.setAlpha(100);
+
+        backgroundPaint = new Paint();
+        backgroundPaint.setColor(ContextCompat.getColor(context, R.color.card_background));
+        backgroundPaint.setStyle(Paint.Style.FILL);
+
+        addSeries(ContextCompat.getColor(context, R.color.chart_hr_line), 40, 120);
+        addSeries(ContextCompat.getColor(context, R.color.chart_spo2_line), 85, 100);
+    }
+
+    // Returns the index to push values to. Values are clamped to [min, max] when drawn.
+    @MainThread
+    public int addSeries(int color, float min, float max) {
+        series.add(new Series(color, min, max, capacity));
+        return series.size() - 1;
+    }
+
+    // Number of values visible across the full width. Clears all series.
+    @MainThread
+    public void setCapacity(int capacity) {
+        this.capacity = capacity;
+        for (int i = 0; i < series.size(); i++) {
+            series.get(i).allocate(capacity);
+        }
+        scheduleFrame();
+    }
+
+    // NaN leaves a gap in the line.
+    @MainThread
+    public void push(int seriesIndex, float value) {
+        series.get(seriesIndex).push(value);
+        scheduleFrame();
+    }
+
+    @MainThread
+    public void clear() {
+        for (int i = 0; i < series.size(); i++) {
+            series.get(i).clear();
+        }
+        scheduleFrame();
+    }
+
+    private void scheduleFrame() {
+        if (framePending) return;
+        framePending = true;
+        postInvalidateOnAnimation();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        framePending = false;
+
+        int width = getWidth();
+        int height = getHeight();
+        canvas.drawRect(0, 0, width, height, backgroundPaint);
+
+        float plotHeight = height - 2 * padding;
+        float plotWidth = width - 2 * padding;
+        if (plotWidth <= 0 || plotHeight <= 0) return;
+
+        for (int i = 0; i <= GRID_LINES; i++) {
+            float y = padding + plotHeight * i / GRID_LINES;
+            canvas.drawLine(padding, y, width - padding, y, gridPaint);
+        }
+
+        for (int i = 0; i < series.size(); i++) {
+            Series s = series.get(i);
+            if (s.size < 2) continue;
+            s.buildPath(padding, padding, plotWidth, plotHeight);
+            canvas.drawPath(s.path, s.paint);
+        }
+    }
+
+    private static class Series {
+        final Paint paint;
+        final Path path = new Path();
+        final float min;
+        final float max;
+        float[] values;
+        int head = 0;
+        int size = 0;
+
+        Series(int color, float min, float max, int capacity) {
+            this.min = min;
+            this.max = max;
+            paint = new Paint(Paint.ANTI_ALIAS_FLAG);
+            paint.setColor(color);
+            paint.setStyle(Paint.Style.STROKE);
+            paint.setStrokeWidth(4f);
+            paint.setStrokeCap(Paint.Cap.ROUND);
+            paint.setStrokeJoin(Paint.Join.ROUND);
+            allocate(capacity);
+        }
+
+        void allocate(int capacity) {
+            values = new float[capacity];
+            clear();
+        }
+
+        void push(float value) {
+            values[head] = value;
+            head = (head + 1) % values.length;
+            if (size < values.length) size++;
+        }
+
+        void clear() {
+            head = 0;
+            size = 0;
+        }
+
+        // The newest value sits at the right edge; older values scroll off to the left. When
+        // there are more values than pixels, only every stride-th value becomes a vertex.
+        void buildPath(float left, float top, float width, float height) {
+            path.rewind();
+
+            int capacity = values.length;
+            float step = width / (capacity - 1);
+            int stride = Math.max(1, (int) Math.ceil(size / width));
+            int oldest = (head - size + capacity) % capacity;
+            int offset = capacity - size;
+            float range = max - min;
+
+            boolean penDown = false;
+            for (int i = (size - 1) % stride; i < size; i += stride) {
+                float value = values[(oldest + i) % capacity];
+                if (Float.isNaN(value)) {
+                    penDown = false;
+                    continue;
+                }
+
+                float normalized = Math.max(0f, Math.min(1f, (value - min) / range));
+                float x = left + (offset + i) * step;
+                float y = top + height - height * normalized;
+                if (penDown) {
+                    path.lineTo(x, y);
+                } else {
+                    path.moveTo(x, y);
+                    penDown = true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package com.example.bismillahberdetak.views;
+
+// Range minimum/maximum over an int series in O(log n) per query or update, so the y axis can
+// follow the visible window on every gesture frame without rescanning the data.
+final class MinMaxSegmentTree {
+
+    private final int leafCount;
+    private final int[] min;
+    private final int[] max;
+
+    // capacity leaves room for set() past size without rebuilding.
+    MinMaxSegmentTree(int[] values, int size, int capacity) {
+        int leaves = 1;
+        while (leaves < Math.max(size, capacity)) leaves <<= 1;
+        leafCount = leaves;
+        min = new int[2 * leaves];
+        max = new int[2 * leaves];
+
+        for (int i = 0; i < leaves; i++) {
+            min[leaves + i] = i < size ? values[i] : Integer.MAX_VALUE;
+            max[leaves + i] = i < size ? values[i] : Integer.MIN_VALUE;
+        }
+        for (int i = leaves - 1; i > 0; i--) {
+            min[i] = Math.min(min[2 * i], min[2 * i + 1]);
+            max[i] = Math.max(max[2 * i], max[2 * i + 1]);
+        }
+    }
+
+    // Returns false when index is beyond the capacity the tree was built with.
+    boolean set(int index, int value) {
+        if (index >= leafCount) return false;
+
+        int node = index + leafCount;
+        min[node] = value;
+        max[node] = value;
+        for (node >>= 1; node > 0; node >>= 1) {
+            min[node] = Math.min(min[2 * node], min[2 * node + 1]);
+            max[node] = Math.max(max[2 * node], max[2 * node + 1]);
+        }
+        return true;
+    }
+
+    // Integer.MAX_VALUE when [from, to) is empty.
+    int min(int from, int to) {
+        int result = Integer.MAX_VALUE;
+        for (int l = from + leafCount, r = to + leafCount; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) result = Math.min(result, min[l++]);
+            if ((r & 1) == 1) result = Math.min(result, min[--r]);
+        }
+        return result;
+    }
+
+    // Integer.MIN_VALUE when [from, to) is empty.
+    int max(int from, int to) {
+        int result = Integer.MIN_VALUE;
+        for (int l = from + leafCount, r = to + leafCount; l < r; l >>= 1, r >>= 1) {
+            if ((l & 1) == 1) result = Math.max(result, max[l++]);
+            if ((r & 1) == 1) result = Math.max(result, max[--r]);
+        }
+        return result;
+    }
+}
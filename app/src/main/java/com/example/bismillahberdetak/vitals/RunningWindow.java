@@ -0,0 +1,61 @@
+package com.example.bismillahberdetak.vitals;
+
+// Fixed-size sliding window over doubles with an O(1) running sum. The sum is rebuilt from
+// the window each time the write position wraps, so rounding error cannot build up.
+public class RunningWindow {
+
+    private final double[] values;
+    private int head = 0;
+    private int size = 0;
+    private double sum = 0;
+
+    public RunningWindow(int capacity) {
+        values = new double[capacity];
+    }
+
+    public void add(double value) {
+        if (size == values.length) {
+            sum -= values[head];
+        } else {
+            size++;
+        }
+        values[head] = value;
+        sum += value;
+
+        head++;
+        if (head == values.length) {
+            head = 0;
+            resum();
+        }
+    }
+
+    public double getSum() {
+        return sum;
+    }
+
+    public double getMean() {
+        return size == 0 ? 0 : sum / size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isFull() {
+        return size == values.length;
+    }
+
+    public void clear() {
+        head = 0;
+        size = 0;
+        sum = 0;
+    }
+
+    private void resum() {
+        double total = 0;
+        for (int i = 0; i < size; i++) {
+            total += values[i];
+        }
+        sum = total;
+    }
+}
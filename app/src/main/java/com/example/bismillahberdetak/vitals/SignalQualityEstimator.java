@@ -0,0 +1,151 @@
+package com.example.bismillahberdetak.vitals;
+
+// Scores the instant HR/SpO2 stream while it arrives, so the app can show a reading before
+// the device's hasValidReading flag flips and give up on a session that is not going to
+// produce one. Every input is folded into exponentially weighted averages, so each sample
+// is O(1) and nothing is kept per sample.
+public class SignalQualityEstimator {
+
+    private static final double ALPHA = 0.25;
+    private static final int MIN_SAMPLES = 3;
+
+    private static final int MIN_HR = 40;
+    private static final int MAX_HR = 200;
+    private static final int MIN_SPO2 = 70;
+    private static final int MAX_SPO2 = 100;
+
+    // RMS change between consecutive values at which stability scores zero.
+    private static final double HR_DELTA_LIMIT = 12;
+    private static final double SPO2_DELTA_LIMIT = 4;
+
+    // Perfusion index (AC/DC of IR, %) below PI_MIN scores zero, above PI_GOOD scores one.
+    private static final double PI_MIN = 0.1;
+    private static final double PI_GOOD = 0.5;
+
+    private static final double ACCEPT_SCORE = 0.6;
+    private static final double POOR_SCORE = 0.3;
+
+    private int samples = 0;
+    private boolean hasPrevious = false;
+    private int previousHr;
+    private int previousSpo2;
+    private double dropoutRate = 0;
+    private double hrDeltaSquared = 0;
+    private double spo2DeltaSquared = 0;
+    private double perfusionIndex = Double.NaN;
+    private boolean lastPlausible = false;
+
+    private double score = 0;
+    private long poorSince = -1;
+    private long lastTimestamp = 0;
+
+    // perfusionIndex is NaN when no raw samples are available.
+    public void add(long timestampMs, int hr, int spo2, double perfusionIndex) {
+        samples++;
+        lastTimestamp = timestampMs;
+
+        boolean plausible = hr >= MIN_HR && hr <= MAX_HR && spo2 >= MIN_SPO2 && spo2 <= MAX_SPO2;
+        lastPlausible = plausible;
+        dropoutRate += ((plausible ? 0 : 1) - dropoutRate) * ALPHA;
+
+        if (plausible) {
+            if (hasPrevious) {
+                double hrDelta = hr - previousHr;
+                double spo2Delta = spo2 - previousSpo2;
+                hrDeltaSquared += (hrDelta * hrDelta - hrDeltaSquared) * ALPHA;
+                spo2DeltaSquared += (spo2Delta * spo2Delta - spo2DeltaSquared) * ALPHA;
+            }
+            previousHr = hr;
+            previousSpo2 = spo2;
+            hasPrevious = true;
+        }
+
+        if (!Double.isNaN(perfusionIndex)) {
+            this.perfusionIndex = Double.isNaN(this.perfusionIndex)
+                    ? perfusionIndex
+                    : this.perfusionIndex + (perfusionIndex - this.perfusionIndex) * ALPHA;
+        }
+
+        score = (1 - dropoutRate) * stabilityScore() * perfusionScore();
+
+        if (samples >= MIN_SAMPLES && score < POOR_SCORE) {
+            if (poorSince < 0) poorSince = timestampMs;
+        } else {
+            poorSince = -1;
+        }
+    }
+
+    // 0 (unusable) .. 1 (clean).
+    public double getScore() {
+        return score;
+    }
+
+    // The latest value is plausible and the stream has been clean enough to show it.
+    public boolean isAcceptable() {
+        return samples >= MIN_SAMPLES && lastPlausible && score >= ACCEPT_SCORE;
+    }
+
+    public boolean isPoor() {
+        return poorSince >= 0;
+    }
+
+    // How long the score has stayed below the poor threshold, 0 when it is not poor.
+    public long getPoorDurationMs() {
+        return poorSince < 0 ? 0 : lastTimestamp - poorSince;
+    }
+
+    public double getDropoutRate() {
+        return dropoutRate;
+    }
+
+    public double getHeartRateJitter() {
+        return Math.sqrt(hrDeltaSquared);
+    }
+
+    public double getSpo2Jitter() {
+        return Math.sqrt(spo2DeltaSquared);
+    }
+
+    public double getPerfusionIndex() {
+        return perfusionIndex;
+    }
+
+    public int getSampleCount() {
+        return samples;
+    }
+
+    public void reset() {
+        samples = 0;
+        hasPrevious = false;
+        dropoutRate = 0;
+        hrDeltaSquared = 0;
+        spo2DeltaSquared = 0;
+        perfusionIndex = Double.NaN;
+        lastPlausible = false;
+        score = 0;
+        poorSince = -1;
+        lastTimestamp = 0;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("score=%.2f dropout=%.2f hrJitter=%.1f spo2Jitter=%.1f pi=%.2f",
+                score, dropoutRate, getHeartRateJitter(), getSpo2Jitter(), perfusionIndex);
+    }
+
+    private double stabilityScore() {
+        if (!hasPrevious) return 0;
+        double hr = 1 - getHeartRateJitter() / HR_DELTA_LIMIT;
+        double spo2 = 1 - getSpo2Jitter() / SPO2_DELTA_LIMIT;
+        return clamp(hr) * clamp(spo2);
+    }
+
+    private double perfusionScore() {
+        if (Double.isNaN(perfusionIndex)) return 1;
+        return clamp((perfusionIndex - PI_MIN) / (PI_GOOD - PI_MIN));
+    }
+
+    private static double clamp(double value) {
+        return Math.max(0, Math.min(1, value));
+    }
+}
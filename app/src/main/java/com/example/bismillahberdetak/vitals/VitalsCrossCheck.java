@@ -0,0 +1,99 @@
+package com.example.bismillahberdetak.vitals;
+
+import android.util.Log;
+
+import com.example.bismillahberdetak.models.Reading;
+import com.example.bismillahberdetak.ppg.PpgFrameCodec;
+import com.example.bismillahberdetak.ppg.PpgFrameDecoder;
+import com.example.bismillahberdetak.ppg.PpgRingBuffer;
+
+import java.util.Map;
+
+// Runs VitalsEngine on the raw PPG frames of a measurement and compares its result with the
+// instantHR / instantSPO2 values the ESP32 computes from the same samples.
+public class VitalsCrossCheck {
+
+    private static final String TAG = "VitalsCrossCheck";
+    private static final int DEFAULT_SAMPLE_RATE = 100;
+    private static final int BUFFER_SECONDS = 4;
+    private static final int HR_TOLERANCE = 5;
+    private static final int SPO2_TOLERANCE = 2;
+
+    private PpgRingBuffer buffer;
+    private PpgFrameDecoder decoder;
+    private VitalsEngine engine;
+
+    private int comparisons = 0;
+    private int disagreements = 0;
+    private long hrErrorSum = 0;
+    private long spo2ErrorSum = 0;
+
+    public void onFrame(Map<?, ?> frame) {
+        if (decoder == null) {
+            // The first frame tells us the sample rate the engine needs to be built for.
+            Object rate = frame.get(PpgFrameCodec.FIELD_SAMPLE_RATE);
+            int sampleRate = rate instanceof Number && ((Number) rate).intValue() > 0
+                    ? ((Number) rate).intValue() : DEFAULT_SAMPLE_RATE;
+            buffer = new PpgRingBuffer(sampleRate * BUFFER_SECONDS);
+            decoder = new PpgFrameDecoder(buffer);
+            engine = new VitalsEngine(sampleRate);
+        }
+
+        if (decoder.decode(frame) > 0) {
+            engine.consume(buffer);
+        }
+    }
+
+    public VitalsEngine getEngine() {
+        return engine;
+    }
+
+    // NaN until raw frames with a finger on the sensor have been seen.
+    public double getPerfusionIndex() {
+        if (engine == null || !engine.hasFinger()) return Double.NaN;
+        return engine.getPerfusionIndex();
+    }
+
+    // Returns false when both sides have a valid value and they disagree beyond tolerance.
+    public boolean compare(Reading instant) {
+        if (engine == null || !engine.isHeartRateValid() || !engine.isSpo2Valid()) return true;
+        if (instant.getInstantHR() <= 0 || instant.getInstantSPO2() <= 0) return true;
+
+        int hrError = Math.abs(engine.getHeartRate() - instant.getInstantHR());
+        int spo2Error = Math.abs(engine.getSpo2() - instant.getInstantSPO2());
+        comparisons++;
+        hrErrorSum += hrError;
+        spo2ErrorSum += spo2Error;
+
+        if (hrError > HR_TOLERANCE || spo2Error > SPO2_TOLERANCE) {
+            disagreements++;
+            Log.w(TAG, "Device " + instant.getInstantHR() + " bpm / " + instant.getInstantSPO2()
+                    + "%, on-device " + engine.getHeartRate() + " bpm / " + engine.getSpo2() + "%");
+            return false;
+        }
+        return true;
+    }
+
+    public void logSummary(String label) {
+        if (comparisons == 0) {
+            Log.d(TAG, label + ": no comparable samples");
+            return;
+        }
+        Log.d(TAG, label + ": compared=" + comparisons
+                + " disagreements=" + disagreements
+                + String.format(" meanHrError=%.1f meanSpo2Error=%.1f",
+                        hrErrorSum / (double) comparisons, spo2ErrorSum / (double) comparisons)
+                + " missedFrames=" + decoder.getMissedFrames());
+    }
+
+    public void reset() {
+        if (decoder != null) {
+            decoder.reset();
+            engine.reset();
+        }
+        comparisons = 0;
+        disagreements = 0;
+        hrErrorSum = 0;
+        spo2ErrorSum = 0;
+    }
+}
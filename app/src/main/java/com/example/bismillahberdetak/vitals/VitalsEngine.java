@@ -0,0 +1,240 @@
+package com.example.bismillahberdetak.vitals;
+
+import com.example.bismillahberdetak.ppg.PpgRingBuffer;
+
+// Heart rate and SpO2 from raw MAX30102 red/IR samples, following the same steps as the
+// Maxim reference algorithm the firmware runs: DC removal, beat detection on the inverted
+// IR pulse and the red/IR ratio-of-ratios for SpO2. Every step is a fixed-size filter or
+// window, so each sample costs O(1) and nothing is allocated after construction.
+public class VitalsEngine {
+
+    // DC level of the IR channel below which no finger is on the sensor (18-bit ADC counts).
+    private static final double FINGER_THRESHOLD = 50000;
+    private static final double DC_TIME_CONSTANT_S = 1.0;
+    private static final double PULSE_CUTOFF_HZ = 4.0;
+    private static final double ENVELOPE_DECAY_S = 2.0;
+    private static final double BEAT_THRESHOLD = 0.4;
+    private static final double MIN_BEAT_INTERVAL_S = 0.3;   // 200 bpm
+    private static final double MAX_BEAT_INTERVAL_S = 1.5;   // 40 bpm
+    private static final int BEAT_HISTORY = 8;
+    private static final int MIN_BEATS = 3;
+    private static final double SPO2_WINDOW_S = 4.0;
+
+    private final int sampleRate;
+    private final double dcAlpha;
+    private final double pulseAlpha;
+    private final double envelopeDecay;
+    private final int minBeatInterval;
+    private final int maxBeatInterval;
+
+    private final RunningWindow redAcPower;
+    private final RunningWindow irAcPower;
+    private final int[] beatIntervals = new int[BEAT_HISTORY];
+    private final int[] sortScratch = new int[BEAT_HISTORY];
+
+    private boolean primed = false;
+    private double redDc;
+    private double irDc;
+    private double redPulse;
+    private double irPulse;
+    private double envelope;
+    private double previousBeatSignal;
+    private boolean rising = false;
+    private int samplesSinceBeat = -1;
+    private int beatHead = 0;
+    private int beatCount = 0;
+    private long consumedSamples = 0;
+
+    private int heartRate;
+    private int spo2;
+    private boolean heartRateValid;
+    private boolean spo2Valid;
+
+    public VitalsEngine(int sampleRate) {
+        this.sampleRate = sampleRate;
+        dcAlpha = 1.0 / (DC_TIME_CONSTANT_S * sampleRate);
+        double rc = 2 * Math.PI * PULSE_CUTOFF_HZ / sampleRate;
+        pulseAlpha = rc / (1 + rc);
+        envelopeDecay = Math.exp(-1.0 / (ENVELOPE_DECAY_S * sampleRate));
+        minBeatInterval = (int) Math.round(MIN_BEAT_INTERVAL_S * sampleRate);
+        maxBeatInterval = (int) Math.round(MAX_BEAT_INTERVAL_S * sampleRate);
+
+        int window = (int) Math.round(SPO2_WINDOW_S * sampleRate);
+        redAcPower = new RunningWindow(window);
+        irAcPower = new RunningWindow(window);
+    }
+
+    public void addSample(int red, int ir) {
+        if (!primed) {
+            redDc = red;
+            irDc = ir;
+            primed = true;
+        }
+
+        redDc += (red - redDc) * dcAlpha;
+        irDc += (ir - irDc) * dcAlpha;
+
+        if (irDc < FINGER_THRESHOLD) {
+            resetMeasurement();
+            return;
+        }
+
+        redPulse += ((red - redDc) - redPulse) * pulseAlpha;
+        irPulse += ((ir - irDc) - irPulse) * pulseAlpha;
+
+        redAcPower.add(redPulse * redPulse);
+        irAcPower.add(irPulse * irPulse);
+
+        detectBeat(-irPulse);
+        updateSpo2();
+    }
+
+    // Feeds every sample written to the buffer since the last call. Samples that were
+    // already overwritten by the time this runs are skipped. Returns the number processed.
+    public int consume(PpgRingBuffer buffer) {
+        long available = buffer.getTotalSamples() - consumedSamples;
+        if (available < 0) {
+            // The buffer was cleared.
+            consumedSamples = 0;
+            available = buffer.getTotalSamples();
+        }
+
+        int count = (int) Math.min(available, buffer.size());
+        int start = buffer.size() - count;
+        for (int i = start; i < buffer.size(); i++) {
+            addSample(buffer.getRed(i), buffer.getIr(i));
+        }
+        consumedSamples = buffer.getTotalSamples();
+        return count;
+    }
+
+    public int getSampleRate() {
+        return sampleRate;
+    }
+
+    public boolean hasFinger() {
+        return primed && irDc >= FINGER_THRESHOLD;
+    }
+
+    // IR pulse amplitude relative to its DC level, in percent; NaN until samples arrive.
+    public double getPerfusionIndex() {
+        if (irAcPower.size() == 0 || irDc <= 0) return Double.NaN;
+        return 100 * Math.sqrt(irAcPower.getMean()) / irDc;
+    }
+
+    public int getHeartRate() {
+        return heartRate;
+    }
+
+    public boolean isHeartRateValid() {
+        return heartRateValid;
+    }
+
+    public int getSpo2() {
+        return spo2;
+    }
+
+    public boolean isSpo2Valid() {
+        return spo2Valid;
+    }
+
+    public void reset() {
+        primed = false;
+        consumedSamples = 0;
+        resetMeasurement();
+    }
+
+    private void resetMeasurement() {
+        redPulse = 0;
+        irPulse = 0;
+        envelope = 0;
+        previousBeatSignal = 0;
+        rising = false;
+        samplesSinceBeat = -1;
+        beatHead = 0;
+        beatCount = 0;
+        redAcPower.clear();
+        irAcPower.clear();
+        heartRate = 0;
+        spo2 = 0;
+        heartRateValid = false;
+        spo2Valid = false;
+    }
+
+    // Local maxima of the inverted IR pulse above a fraction of the decaying amplitude envelope.
+    private void detectBeat(double signal) {
+        envelope = Math.max(Math.abs(signal), envelope * envelopeDecay);
+        if (samplesSinceBeat >= 0) {
+            samplesSinceBeat++;
+        }
+
+        boolean nowRising = signal > previousBeatSignal;
+        boolean isPeak = rising && !nowRising && previousBeatSignal > envelope * BEAT_THRESHOLD;
+        rising = nowRising;
+        double peakValue = previousBeatSignal;
+        previousBeatSignal = signal;
+
+        if (!isPeak || peakValue <= 0) return;
+
+        if (samplesSinceBeat < 0) {
+            samplesSinceBeat = 0;
+            return;
+        }
+        if (samplesSinceBeat < minBeatInterval) return;
+
+        if (samplesSinceBeat > maxBeatInterval) {
+            // Missed beats or motion; start the interval history over. The median reads the
+            // first beatCount slots, so the head has to restart with the count.
+            beatHead = 0;
+            beatCount = 0;
+            heartRateValid = false;
+        } else {
+            beatIntervals[beatHead] = samplesSinceBeat;
+            beatHead = (beatHead + 1) % BEAT_HISTORY;
+            beatCount = Math.min(beatCount + 1, BEAT_HISTORY);
+            updateHeartRate();
+        }
+        samplesSinceBeat = 0;
+    }
+
+    private void updateHeartRate() {
+        if (beatCount < MIN_BEATS) {
+            heartRateValid = false;
+            return;
+        }
+
+        // Median interval, so a single missed or doubled beat does not move the rate.
+        for (int i = 0; i < beatCount; i++) {
+            int value = beatIntervals[i];
+            int j = i - 1;
+            while (j >= 0 && sortScratch[j] > value) {
+                sortScratch[j + 1] = sortScratch[j];
+                j--;
+            }
+            sortScratch[j + 1] = value;
+        }
+        int median = sortScratch[beatCount / 2];
+
+        heartRate = (int) Math.round(60.0 * sampleRate / median);
+        heartRateValid = true;
+    }
+
+    private void updateSpo2() {
+        if (!redAcPower.isFull() || redDc <= 0 || irDc <= 0) {
+            spo2Valid = false;
+            return;
+        }
+
+        double irRatio = Math.sqrt(irAcPower.getMean()) / irDc;
+        if (irRatio <= 0) {
+            spo2Valid = false;
+            return;
+        }
+        double ratio = (Math.sqrt(redAcPower.getMean()) / redDc) / irRatio;
+
+        // Maxim's calibration curve for the MAX30102.
+        double value = -45.060 * ratio * ratio + 30.354 * ratio + 94.845;
+        spo2 = (int) Math.round(Math.max(0, Math.min(100, value)));
+        spo2Valid = ratio > 0.02 && ratio < 1.84;
+    }
+}
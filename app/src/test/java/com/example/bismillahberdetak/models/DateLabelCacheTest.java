@@ -0,0 +1,87 @@
+package com.example.bismillahberdetak.models;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+// The labels must read exactly like the SimpleDateFormat patterns they replace.
+public class DateLabelCacheTest {
+
+    private static final long START = 1_700_000_000L;
+    private static final long SPAN = 400L * 24 * 60 * 60;
+    private static final long STEP = 7_919L;
+
+    private Locale savedLocale;
+    private TimeZone savedTimeZone;
+
+    @Before
+    public void saveDefaults() {
+        savedLocale = Locale.getDefault();
+        savedTimeZone = TimeZone.getDefault();
+        DateLabelCache.reset();
+    }
+
+    @After
+    public void restoreDefaults() {
+        Locale.setDefault(savedLocale);
+        TimeZone.setDefault(savedTimeZone);
+        DateLabelCache.reset();
+    }
+
+    @Test
+    public void labels_matchSimpleDateFormat() {
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Jakarta"));
+        assertMatchesSimpleDateFormat();
+    }
+
+    // Crosses daylight-saving changes, where the local day and minute shift with the offset.
+    @Test
+    public void labels_matchSimpleDateFormatAcrossDaylightSaving() {
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("America/New_York"));
+        assertMatchesSimpleDateFormat();
+    }
+
+    // HistoryActivity resets the cache when the device locale or time zone changes.
+    @Test
+    public void labels_followLocaleChangeAfterReset() {
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Jakarta"));
+        Locale.setDefault(Locale.US);
+        DateLabelCache.formatDay(START);
+
+        Locale.setDefault(new Locale("id", "ID"));
+        DateLabelCache.reset();
+        assertMatchesSimpleDateFormat();
+    }
+
+    @Test
+    public void labels_followTimeZoneChangeAfterReset() {
+        Locale.setDefault(Locale.US);
+        TimeZone.setDefault(TimeZone.getTimeZone("Asia/Jakarta"));
+        DateLabelCache.formatDay(START);
+        DateLabelCache.formatTime(START);
+
+        TimeZone.setDefault(TimeZone.getTimeZone("Europe/London"));
+        DateLabelCache.reset();
+        assertMatchesSimpleDateFormat();
+    }
+
+    private static void assertMatchesSimpleDateFormat() {
+        SimpleDateFormat dayFormat = new SimpleDateFormat("MMM dd, yyyy", Locale.getDefault());
+        SimpleDateFormat timeFormat = new SimpleDateFormat("HH:mm", Locale.getDefault());
+
+        for (long timestamp = START; timestamp < START + SPAN; timestamp += STEP) {
+            Date date = new Date(timestamp * 1000);
+            assertEquals("day of " + timestamp, dayFormat.format(date), DateLabelCache.formatDay(timestamp));
+            assertEquals("time of " + timestamp, timeFormat.format(date), DateLabelCache.formatTime(timestamp));
+        }
+    }
+}
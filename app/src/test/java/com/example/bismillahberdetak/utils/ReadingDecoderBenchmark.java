@@ -0,0 +1,47 @@
+package com.example.bismillahberdetak.utils;
+
+import com.example.bismillahberdetak.models.Reading;
+import com.google.firebase.database.core.utilities.encoding.CustomClassMapper;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// Time to decode one reading's value map, by ReadingDecoder and by the reflective mapper that
+// DataSnapshot.getValue(Reading.class) uses. Run main() with the unit test classpath.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReadingDecoderBenchmark {
+
+    private final Map<String, Object> values = ReadingDecoderTest.snapshotValues(1_700_000_000L);
+
+    @Benchmark
+    public Reading decoder() {
+        return ReadingDecoder.decode(values, ReadingDecoder.FIELDS_ALL);
+    }
+
+    @Benchmark
+    public Reading reflectiveMapper() {
+        return CustomClassMapper.convertToCustomClass(values, Reading.class);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(ReadingDecoderBenchmark.class.getSimpleName()).build()).run();
+    }
+}
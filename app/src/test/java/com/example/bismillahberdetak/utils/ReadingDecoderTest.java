@@ -0,0 +1,87 @@
+package com.example.bismillahberdetak.utils;
+
+import com.example.bismillahberdetak.models.Reading;
+import com.google.firebase.database.core.utilities.encoding.CustomClassMapper;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+// CustomClassMapper is what DataSnapshot.getValue(Reading.class) runs on the snapshot's value
+// map, so both paths below decode exactly the same input.
+public class ReadingDecoderTest {
+
+    // Values arrive the way the Realtime Database hands them out: integers as Long.
+    static Map<String, Object> snapshotValues(long timestamp) {
+        Map<String, Object> values = new HashMap<>();
+        values.put("heartRate", 72L);
+        values.put("spo2", 98L);
+        values.put("timestamp", timestamp);
+        values.put("measurementTime", 30L);
+        values.put("samples", 3000L);
+        values.put("duration", 30_000L);
+        values.put("method", "ppg");
+        values.put("algorithm", "maxim");
+        values.put("reference", "MAX30102");
+        values.put("hasValidReading", true);
+        values.put("instantHR", 74L);
+        values.put("instantSPO2", 97L);
+        values.put("currentAvgHR", 73L);
+        values.put("currentAvgSPO2", 98L);
+        values.put("validReadings", 12L);
+        values.put("secondsPassed", 18L);
+        values.put("totalSeconds", 30L);
+        values.put("progress", 60L);
+        values.put("status", "measuring");
+        return values;
+    }
+
+    @Test
+    public void decode_matchesReflectiveMapper() {
+        Map<String, Object> values = snapshotValues(1_700_000_000L);
+
+        Reading decoded = ReadingDecoder.decode(values, ReadingDecoder.FIELDS_ALL);
+        Reading reflected = CustomClassMapper.convertToCustomClass(values, Reading.class);
+
+        assertSameReading(reflected, decoded);
+    }
+
+    @Test
+    public void decode_skipsFieldsOutsideMask() {
+        Reading decoded = ReadingDecoder.decode(snapshotValues(1_700_000_000L), ReadingDecoder.FIELDS_SUMMARY);
+
+        assertEquals(72, decoded.getHeartRate());
+        assertEquals(98, decoded.getSpo2());
+        assertEquals(1_700_000_000L, decoded.getTimestamp());
+        assertEquals(0, decoded.getSamples());
+        assertNull(decoded.getMethod());
+        assertNull(decoded.getHasValidReading());
+        assertNull(decoded.getStatus());
+    }
+
+    private static void assertSameReading(Reading expected, Reading actual) {
+        assertEquals(expected.getHeartRate(), actual.getHeartRate());
+        assertEquals(expected.getSpo2(), actual.getSpo2());
+        assertEquals(expected.getTimestamp(), actual.getTimestamp());
+        assertEquals(expected.getMeasurementTime(), actual.getMeasurementTime());
+        assertEquals(expected.getSamples(), actual.getSamples());
+        assertEquals(expected.getDuration(), actual.getDuration());
+        assertEquals(expected.getMethod(), actual.getMethod());
+        assertEquals(expected.getAlgorithm(), actual.getAlgorithm());
+        assertEquals(expected.getReference(), actual.getReference());
+        assertEquals(expected.getHasValidReading(), actual.getHasValidReading());
+        assertEquals(expected.getInstantHR(), actual.getInstantHR());
+        assertEquals(expected.getInstantSPO2(), actual.getInstantSPO2());
+        assertEquals(expected.getCurrentAvgHR(), actual.getCurrentAvgHR());
+        assertEquals(expected.getCurrentAvgSPO2(), actual.getCurrentAvgSPO2());
+        assertEquals(expected.getValidReadings(), actual.getValidReadings());
+        assertEquals(expected.getSecondsPassed(), actual.getSecondsPassed());
+        assertEquals(expected.getTotalSeconds(), actual.getTotalSeconds());
+        assertEquals(expected.getProgress(), actual.getProgress());
+        assertEquals(expected.getStatus(), actual.getStatus());
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.bismillahberdetak.vitals;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+// Samples per second one thread (so one core) pushes through the engine; the score is
+// ops/s because every invocation counts as SAMPLES operations. Run main() with the unit test
+// classpath. The sensor delivers 100 samples/s per device, which is the floor to compare to.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class VitalsEngineBenchmark {
+
+    private static final int SAMPLE_RATE = 100;
+    private static final int SAMPLES = 60 * SAMPLE_RATE;
+
+    private final int[] red = new int[SAMPLES];
+    private final int[] ir = new int[SAMPLES];
+    private VitalsEngine engine;
+
+    // A minute of a 72 bpm finger, so beat detection and both windows do real work.
+    @Setup
+    public void setUp() {
+        for (int i = 0; i < SAMPLES; i++) {
+            double wave = Math.sin(2 * Math.PI * 1.2 * i / SAMPLE_RATE);
+            red[i] = (int) Math.round(80_000 + 400 * wave);
+            ir[i] = (int) Math.round(100_000 + 1000 * wave);
+        }
+        engine = new VitalsEngine(SAMPLE_RATE);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public int addSample() {
+        for (int i = 0; i < SAMPLES; i++) {
+            engine.addSample(red[i], ir[i]);
+        }
+        return engine.getHeartRate() + engine.getSpo2();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(VitalsEngineBenchmark.class.getSimpleName()).build()).run();
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.bismillahberdetak.vitals;
+
+import com.example.bismillahberdetak.ppg.PpgRingBuffer;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+// Drives the engine with a synthetic finger: sinusoidal pulses on fixed DC levels, with the
+// red pulse scaled so the ratio-of-ratios is known in advance.
+public class VitalsEngineTest {
+
+    private static final int SAMPLE_RATE = 100;
+    private static final int IR_DC = 100_000;
+    private static final int RED_DC = 80_000;
+    private static final double IR_AC = 1000;
+
+    private VitalsEngine engine;
+    private double phase;
+
+    @Before
+    public void setUp() {
+        engine = new VitalsEngine(SAMPLE_RATE);
+        phase = 0;
+    }
+
+    private void pulse(double bpm, double ratio, double seconds) {
+        double redAc = ratio * IR_AC * RED_DC / IR_DC;
+        int samples = (int) Math.round(seconds * SAMPLE_RATE);
+        for (int i = 0; i < samples; i++) {
+            phase += 2 * Math.PI * bpm / 60 / SAMPLE_RATE;
+            double wave = Math.sin(phase);
+            engine.addSample((int) Math.round(RED_DC + redAc * wave), (int) Math.round(IR_DC + IR_AC * wave));
+        }
+    }
+
+    private void flat(double seconds) {
+        int samples = (int) Math.round(seconds * SAMPLE_RATE);
+        for (int i = 0; i < samples; i++) {
+            engine.addSample(RED_DC, IR_DC);
+        }
+    }
+
+    private static int expectedSpo2(double ratio) {
+        return (int) Math.round(-45.060 * ratio * ratio + 30.354 * ratio + 94.845);
+    }
+
+    @Test
+    public void heartRate_tracksSteadyPulse() {
+        pulse(72, 0.5, 10);
+
+        assertTrue(engine.hasFinger());
+        assertTrue(engine.isHeartRateValid());
+        assertEquals(72, engine.getHeartRate(), 2);
+    }
+
+    @Test
+    public void spo2_followsRatioOfRatios() {
+        pulse(72, 0.5, 10);
+        assertTrue(engine.isSpo2Valid());
+        assertEquals(expectedSpo2(0.5), engine.getSpo2(), 1);
+
+        pulse(72, 1.0, 10);
+        assertTrue(engine.isSpo2Valid());
+        assertEquals(expectedSpo2(1.0), engine.getSpo2(), 1);
+    }
+
+    @Test
+    public void heartRate_invalidUntilEnoughBeats() {
+        pulse(72, 0.5, 2);
+
+        assertFalse(engine.isHeartRateValid());
+    }
+
+    @Test
+    public void fingerRemoved_clearsReadings() {
+        pulse(72, 0.5, 10);
+        for (int i = 0; i < 5 * SAMPLE_RATE; i++) {
+            engine.addSample(1000, 1000);
+        }
+
+        assertFalse(engine.hasFinger());
+        assertFalse(engine.isHeartRateValid());
+        assertFalse(engine.isSpo2Valid());
+        assertEquals(0, engine.getHeartRate());
+    }
+
+    // A gap longer than the slowest beat throws the interval history away; the rate after
+    // it must come only from beats after the gap.
+    @Test
+    public void missedBeat_restartsIntervalHistory() {
+        pulse(72, 0.5, 10);
+        assertEquals(72, engine.getHeartRate(), 2);
+
+        flat(2);
+        pulse(90, 0.5, 1);
+        assertFalse(engine.isHeartRateValid());
+
+        pulse(90, 0.5, 2);
+        assertTrue(engine.isHeartRateValid());
+        assertEquals(90, engine.getHeartRate(), 2);
+    }
+
+    @Test
+    public void consume_feedsOnlyNewSamples() {
+        PpgRingBuffer buffer = new PpgRingBuffer(SAMPLE_RATE);
+        VitalsEngine direct = new VitalsEngine(SAMPLE_RATE);
+
+        for (int second = 0; second < 10; second++) {
+            for (int i = 0; i < SAMPLE_RATE; i++) {
+                double wave = Math.sin(2 * Math.PI * 1.2 * (second * SAMPLE_RATE + i) / SAMPLE_RATE);
+                int red = (int) Math.round(RED_DC + 400 * wave);
+                int ir = (int) Math.round(IR_DC + IR_AC * wave);
+                buffer.write(red, ir);
+                direct.addSample(red, ir);
+            }
+            assertEquals(SAMPLE_RATE, engine.consume(buffer));
+            assertEquals(0, engine.consume(buffer));
+        }
+
+        assertEquals(direct.getHeartRate(), engine.getHeartRate());
+        assertEquals(direct.getSpo2(), engine.getSpo2());
+    }
+}